@@ -0,0 +1,63 @@
+package com.example.myproject;
+
+import java.util.List;
+
+/**
+ * Set of the APIDs accepted for processing, as a 2048-bit bitset indexed by APID.
+ */
+public class ApidFilter {
+
+    /**
+     * APID reserved for idle packets.
+     */
+    public static final int IDLE_APID = 0x7FF;
+
+    private final long[] accepted = new long[ApidSeqTracker.NUM_APIDS / 64];
+
+    /**
+     * @param allow
+     *            the APIDs to accept, or null to accept all of them except the denied ones
+     * @param deny
+     *            the APIDs to reject, may be null
+     * @param dropIdle
+     *            whether to reject idle packets
+     */
+    public ApidFilter(List<Integer> allow, List<Integer> deny, boolean dropIdle) {
+        if (allow == null) {
+            for (int i = 0; i < accepted.length; i++) {
+                accepted[i] = -1L;
+            }
+        } else {
+            for (int apid : allow) {
+                set(checkApid(apid), true);
+            }
+        }
+        if (deny != null) {
+            for (int apid : deny) {
+                set(checkApid(apid), false);
+            }
+        }
+        if (dropIdle) {
+            set(IDLE_APID, false);
+        }
+    }
+
+    public boolean accepts(int apid) {
+        return (accepted[apid >>> 6] & (1L << apid)) != 0;
+    }
+
+    private void set(int apid, boolean accept) {
+        if (accept) {
+            accepted[apid >>> 6] |= 1L << apid;
+        } else {
+            accepted[apid >>> 6] &= ~(1L << apid);
+        }
+    }
+
+    private static int checkApid(int apid) {
+        if (apid < 0 || apid >= ApidSeqTracker.NUM_APIDS) {
+            throw new IllegalArgumentException("Invalid APID " + apid);
+        }
+        return apid;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.myproject;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Keeps track of the last CCSDS sequence count seen for each APID.
+ * <p>
+ * APIDs are 11 bits, so the state fits in a fixed array of 2048 slots indexed directly by APID. Updating a slot is a
+ * single atomic operation and does not allocate, which makes it suitable for the per-packet path even if one instance
+ * is shared across link threads.
+ * <p>
+ * Optionally, the counts are mirrored to a memory-mapped file, from which they are reloaded on the next start. The
+ * file is written with plain stores and never explicitly synced: the operating system writes the pages back, which
+ * survives a crash of Yamcs but not necessarily of the machine, unless {@link #force()} is called.
+ */
+public class ApidSeqTracker {
+
+    public static final int NUM_APIDS = 2048;
+
+    /**
+     * Value returned by {@link #update(int, int)} for an APID that was not seen before.
+     */
+    public static final int UNSEEN = -1;
+
+    private static final int FILE_MAGIC = 0x53455143; // "SEQC"
+    private static final int FILE_HEADER_SIZE = 4;
+    private static final int FILE_SIZE = FILE_HEADER_SIZE + 4 * NUM_APIDS;
+
+    private final AtomicIntegerArray lastSeq = new AtomicIntegerArray(NUM_APIDS);
+    private MappedByteBuffer mapped;
+
+    public ApidSeqTracker() {
+        for (int i = 0; i < NUM_APIDS; i++) {
+            lastSeq.set(i, UNSEEN);
+        }
+    }
+
+    /**
+     * Creates a tracker persisted in the given file, restoring the counts it contains (if any).
+     */
+    public ApidSeqTracker(Path file) throws IOException {
+        this();
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            boolean valid = channel.size() == FILE_SIZE;
+            // The mapping remains valid after the channel is closed
+            mapped = channel.map(MapMode.READ_WRITE, 0, FILE_SIZE);
+            if (valid && mapped.getInt(0) == FILE_MAGIC) {
+                for (int i = 0; i < NUM_APIDS; i++) {
+                    lastSeq.set(i, mapped.getInt(FILE_HEADER_SIZE + 4 * i));
+                }
+            } else {
+                for (int i = 0; i < NUM_APIDS; i++) {
+                    mapped.putInt(FILE_HEADER_SIZE + 4 * i, UNSEEN);
+                }
+                mapped.putInt(0, FILE_MAGIC);
+            }
+        }
+    }
+
+    /**
+     * Records {@code seq} as the latest sequence count of {@code apid}.
+     *
+     * @return the previous sequence count for this APID, or {@link #UNSEEN} if this is the first packet.
+     */
+    public int update(int apid, int seq) {
+        int old = lastSeq.getAndSet(apid, seq);
+        if (mapped != null) {
+            mapped.putInt(FILE_HEADER_SIZE + 4 * apid, seq);
+        }
+        return old;
+    }
+
+    /**
+     * Increments the sequence count of {@code apid}, wrapping around after 16383. The counts start at 1, as with the
+     * CcsdsSeqCountFiller of Yamcs.
+     * <p>
+     * The increment and the store into the file are done under the lock of the tracker, so that the file always holds
+     * the latest count given out, whatever the number of threads calling this method. It is meant for the TC path;
+     * {@link #update} does not take the lock and should not be used on the same APIDs.
+     *
+     * @return the new sequence count, 1 if the APID was not seen before.
+     */
+    public synchronized int next(int apid) {
+        int old = lastSeq.get(apid);
+        int seq = (old == UNSEEN) ? 1 : (old + 1) & 0x3FFF;
+        lastSeq.set(apid, seq);
+        if (mapped != null) {
+            mapped.putInt(FILE_HEADER_SIZE + 4 * apid, seq);
+        }
+        return seq;
+    }
+
+    /**
+     * Writes the persisted counts to the storage device, so that they also survive a crash of the machine. This may
+     * block, and should not be called from a latency sensitive thread.
+     */
+    public void force() {
+        if (mapped != null) {
+            mapped.force();
+        }
+    }
+
+    /**
+     * @return the latest sequence count for this APID, or {@link #UNSEEN}.
+     */
+    public int get(int apid) {
+        return lastSeq.get(apid);
+    }
+}
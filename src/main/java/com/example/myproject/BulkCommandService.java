@@ -0,0 +1,638 @@
+package com.example.myproject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.yamcs.AbstractYamcsService;
+import org.yamcs.ConfigurationException;
+import org.yamcs.InitException;
+import org.yamcs.Processor;
+import org.yamcs.Spec;
+import org.yamcs.Spec.OptionType;
+import org.yamcs.ValidationException;
+import org.yamcs.YConfiguration;
+import org.yamcs.YamcsServer;
+import org.yamcs.cmdhistory.Attribute;
+import org.yamcs.cmdhistory.CommandHistoryConsumer;
+import org.yamcs.cmdhistory.CommandHistoryFilter;
+import org.yamcs.cmdhistory.CommandHistoryPublisher;
+import org.yamcs.commanding.CommandingManager;
+import org.yamcs.commanding.PreparedCommand;
+import org.yamcs.http.BadRequestException;
+import org.yamcs.http.HandlerContext;
+import org.yamcs.http.HttpHandler;
+import org.yamcs.http.HttpRequestHandler;
+import org.yamcs.http.HttpServer;
+import org.yamcs.http.NotFoundException;
+import org.yamcs.logging.Log;
+import org.yamcs.mdb.Mdb;
+import org.yamcs.mdb.MetaCommandProcessor.CommandBuildResult;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersProducer;
+import org.yamcs.parameter.SystemParametersService;
+import org.yamcs.protobuf.Commanding.CommandId;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.security.ObjectPrivilegeType;
+import org.yamcs.security.User;
+import org.yamcs.xtce.MetaCommand;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.UnitType;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+
+/**
+ * Sends a stack of commands, such as the thousands of commands of a software upload or of a memory patch, in a single
+ * HTTP request.
+ * <p>
+ * The stack is posted to {@code /bulk-commands/<instance>}:
+ *
+ * <pre>
+ * {
+ *   "commands": [
+ *     { "name": "/myproject/SwitchVoltageOn", "args": { "Battery": 1 } },
+ *     { "name": "/myproject/Reboot" }
+ *   ]
+ * }
+ * </pre>
+ *
+ * All the commands are validated and encoded first, in parallel, with the {@link CommandTemplateCache}. If any of them
+ * is invalid, nothing is sent and the errors are returned. Otherwise the commands are passed to the commanding manager
+ * of the processor by a single thread, in the order of the stack. They go through the command queues and reach the link
+ * in that order, where the command postprocessor assigns their sequence counts. At most {@code maxInFlight} commands
+ * are passed on without having been sent by the link, which keeps the queue of the link from overflowing.
+ * <p>
+ * The commands are prepared by the commanding manager as raw commands, since they are already encoded, with the
+ * values of their arguments. Their origin is {@code bulk@<client address>}, and their sequence numbers are those of
+ * the service, so that their ids differ from those of the commands sent through the Yamcs API.
+ * <p>
+ * The response gives the number of commands sent and the throughput of the stack in commands per second, which is
+ * also published as a system parameter together with the encoding times.
+ * <p>
+ * This is specified in the configuration file yamcs.myproject.yaml:
+ *
+ * <pre>
+ * services:
+ *   - class: com.example.myproject.BulkCommandService
+ *     args:
+ *       maxInFlight: 256
+ * </pre>
+ */
+public class BulkCommandService extends AbstractYamcsService implements CommandHistoryConsumer,
+        SystemParametersProducer {
+
+    static final String ROUTE = "bulk-commands";
+
+    private static final String SENT_STATUS = CommandHistoryPublisher.AcknowledgeSent_KEY
+            + CommandHistoryPublisher.SUFFIX_STATUS;
+    private static final String COMPLETE_STATUS = CommandHistoryPublisher.CommandComplete_KEY
+            + CommandHistoryPublisher.SUFFIX_STATUS;
+
+    // Services by instance, for the HTTP route shared by all instances
+    private static final Map<String, BulkCommandService> services = new ConcurrentHashMap<>();
+    private static boolean routeAdded;
+
+    private String processorName;
+    private int maxInFlight;
+    private int encodingThreads;
+    private int maxRequestSize;
+    private long ackTimeout;
+
+    private Processor processor;
+    private Mdb mdb;
+    private Commander commander;
+    private CommandTemplateCache templates;
+    private CommandHistoryFilter subscription;
+    private ExecutorService encoder;
+    private ExecutorService sender;
+
+    // Commands passed on and not yet sent by the link, with the stack they belong to
+    private final Map<CommandId, Stack> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger seqNum = new AtomicInteger();
+
+    private SystemParametersService sps;
+    private Parameter spCommandsPerSecond;
+    private volatile double lastCommandsPerSecond = Double.NaN;
+
+    @Override
+    public Spec getSpec() {
+        Spec spec = new Spec();
+        spec.addOption("processor", OptionType.STRING).withDefault("realtime")
+                .withDescription("Processor whose commanding manager sends the commands.");
+        spec.addOption("maxInFlight", OptionType.INTEGER).withDefault(256)
+                .withDescription("Maximum number of commands passed on and not yet sent by the link. It should be "
+                        + "lower than the queue size of the link.");
+        spec.addOption("encodingThreads", OptionType.INTEGER)
+                .withDefault(Runtime.getRuntime().availableProcessors())
+                .withDescription("Number of threads validating and encoding the commands of a stack.");
+        spec.addOption("maxRequestSize", OptionType.INTEGER).withDefault(16 * 1024 * 1024)
+                .withDescription("Maximum size in bytes of a stack request.");
+        spec.addOption("ackTimeout", OptionType.INTEGER).withDefault(10000)
+                .withDescription("Time in milliseconds after which a stack is aborted if the link does not send any "
+                        + "of its commands in flight.");
+        return spec;
+    }
+
+    @Override
+    public void init(String yamcsInstance, String serviceName, YConfiguration config) throws InitException {
+        super.init(yamcsInstance, serviceName, config);
+        configure(config);
+
+        HttpServer httpServer = YamcsServer.getServer().getGlobalService(HttpServer.class);
+        if (httpServer == null) {
+            throw new InitException("The bulk command service requires the HTTP server");
+        }
+        // The route is shared by the services of all the instances
+        synchronized (BulkCommandService.class) {
+            if (!routeAdded) {
+                httpServer.addRoute(ROUTE, BulkCommandHandler::new);
+                routeAdded = true;
+            }
+        }
+        services.put(yamcsInstance, this);
+    }
+
+    private void configure(YConfiguration config) throws InitException {
+        processorName = config.getString("processor");
+        maxInFlight = config.getInt("maxInFlight");
+        encodingThreads = config.getInt("encodingThreads");
+        maxRequestSize = config.getInt("maxRequestSize");
+        ackTimeout = config.getLong("ackTimeout");
+        if (maxInFlight < 1 || encodingThreads < 1) {
+            throw new InitException("maxInFlight and encodingThreads must be at least 1");
+        }
+    }
+
+    /**
+     * Creates a service that is not part of a Yamcs server, for the tests and benchmarks. It is used through
+     * {@link #process}, and is stopped with {@link #shutDownExecutors}.
+     */
+    static BulkCommandService standalone(YConfiguration config, Mdb mdb, CommandTemplateCache templates,
+            Commander commander) throws InitException, ValidationException {
+        BulkCommandService service = new BulkCommandService();
+        service.log = new Log(BulkCommandService.class);
+        service.configure(service.getSpec().validate(config));
+        service.start(mdb, templates, commander);
+        return service;
+    }
+
+    @Override
+    protected void doStart() {
+        processor = YamcsServer.getServer().getProcessor(yamcsInstance, processorName);
+        if (processor == null || processor.getCommandingManager() == null) {
+            notifyFailed(new ConfigurationException("No processor '" + processorName + "' with commanding in "
+                    + "instance " + yamcsInstance));
+            return;
+        }
+        CommandingManager commandingManager = processor.getCommandingManager();
+        CommandTemplateCache cache = new CommandTemplateCache(processor.getProcessorData());
+        cache.compileAll();
+        start(processor.getMdb(), cache, new Commander() {
+            @Override
+            public PreparedCommand buildRawCommand(MetaCommand mc, byte[] binary, String origin, int seqNum,
+                    User user) {
+                return commandingManager.buildRawCommand(mc, binary, origin, seqNum, user);
+            }
+
+            @Override
+            public void sendCommand(User user, PreparedCommand pc) {
+                commandingManager.sendCommand(user, pc);
+            }
+        });
+        subscription = processor.getCommandHistoryManager().subscribeCommandHistory(null, 0, this);
+
+        sps = SystemParametersService.getInstance(yamcsInstance);
+        if (sps != null) {
+            String namespace = "bulkCommands";
+            spCommandsPerSecond = sps.createSystemParameter(namespace + "/commandsPerSecond", Type.DOUBLE,
+                    new UnitType("cmd/s"), "Throughput of the last stack of commands");
+            templates.setupSystemParameters(sps, namespace);
+            sps.registerProducer(this);
+        }
+        notifyStarted();
+    }
+
+    private void start(Mdb mdb, CommandTemplateCache templates, Commander commander) {
+        this.mdb = mdb;
+        this.templates = templates;
+        this.commander = commander;
+        encoder = Executors.newFixedThreadPool(encodingThreads, r -> {
+            Thread t = new Thread(r, getClass().getSimpleName() + "-encoder");
+            t.setDaemon(true);
+            return t;
+        });
+        sender = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, getClass().getSimpleName() + "-sender");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    void shutDownExecutors() {
+        if (sender != null) {
+            sender.shutdownNow();
+            encoder.shutdownNow();
+        }
+    }
+
+    @Override
+    protected void doStop() {
+        services.remove(yamcsInstance, this);
+        if (sps != null) {
+            sps.unregisterProducer(this);
+        }
+        if (subscription != null) {
+            processor.getCommandHistoryManager().unsubscribeCommandHistory(subscription.subscriptionId);
+        }
+        shutDownExecutors();
+        notifyStopped();
+    }
+
+    // Processes a stack request, in the sender thread
+    private void processStack(HandlerContext ctx, String body) {
+        Response response = process(ctx.getUser(), "bulk@" + ctx.getOriginalHostAddress(), body);
+        sendJson(ctx, response.status, response.body);
+    }
+
+    /**
+     * Validates, encodes and sends a stack of commands, in the calling thread. There is always a response: 400 if the
+     * request is malformed or if any of the commands is invalid, 500 if an unexpected error occurs.
+     *
+     * @param origin
+     *            origin of the commands, in their ids
+     */
+    Response process(User user, String origin, String body) {
+        try {
+            return doProcess(user, origin, body);
+        } catch (BadRequestException e) {
+            return new Response(HttpResponseStatus.BAD_REQUEST, error(-1, null, e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error processing a stack of commands", e);
+            return new Response(HttpResponseStatus.INTERNAL_SERVER_ERROR, error(-1, null, e.toString()));
+        }
+    }
+
+    private Response doProcess(User user, String origin, String body) throws BadRequestException {
+        List<MetaCommand> metaCommands = new ArrayList<>();
+        List<Map<String, Object>> args = new ArrayList<>();
+        JsonArray errors = new JsonArray();
+        parse(user, body, metaCommands, args, errors);
+
+        long t0 = System.nanoTime();
+        int n = metaCommands.size();
+        CommandBuildResult[] results = new CommandBuildResult[n];
+        String[] messages = encode(metaCommands, args, results);
+        if (messages == null) {
+            return new Response(HttpResponseStatus.SERVICE_UNAVAILABLE, error(-1, null, "Interrupted"));
+        }
+        for (int i = 0; i < n; i++) {
+            if (messages[i] != null) {
+                errors.add(error(i, metaCommands.get(i).getQualifiedName(), messages[i]));
+            }
+        }
+        if (errors.size() > 0) {
+            JsonObject response = new JsonObject();
+            response.add("errors", errors);
+            return new Response(HttpResponseStatus.BAD_REQUEST, response);
+        }
+        long t1 = System.nanoTime();
+
+        Stack stack = new Stack(maxInFlight);
+        String message = send(user, origin, metaCommands, args, results, stack);
+        long t2 = System.nanoTime();
+
+        double commandsPerSecond = stack.sent * 1e9 / (t2 - t0);
+        if (message == null) {
+            lastCommandsPerSecond = commandsPerSecond;
+        }
+        log.info("Stack of {} commands: {} sent, {} failed, {} commands/s", n, stack.sent, stack.failed.get(),
+                Math.round(commandsPerSecond));
+
+        JsonObject response = new JsonObject();
+        response.addProperty("commands", n);
+        response.addProperty("sent", stack.sent);
+        response.addProperty("failed", stack.failed.get());
+        response.addProperty("encodingTime", (t1 - t0) / 1e6);
+        response.addProperty("sendingTime", (t2 - t1) / 1e6);
+        response.addProperty("commandsPerSecond", commandsPerSecond);
+        if (message != null) {
+            response.addProperty("message", message);
+        }
+        return new Response(HttpResponseStatus.OK, response);
+    }
+
+    /**
+     * Resolves the commands of the stack and converts their arguments. The commands that cannot be sent are added as
+     * null, with their error.
+     */
+    private void parse(User user, String body, List<MetaCommand> metaCommands, List<Map<String, Object>> args,
+            JsonArray errors) throws BadRequestException {
+        JsonArray commands;
+        try {
+            JsonObject request = JsonParser.parseString(body).getAsJsonObject();
+            commands = request.getAsJsonArray("commands");
+        } catch (JsonParseException | IllegalStateException | ClassCastException e) {
+            throw new BadRequestException("Invalid stack request: " + e.getMessage());
+        }
+        if (commands == null || commands.size() == 0) {
+            throw new BadRequestException("No commands in the stack");
+        }
+
+        for (int i = 0; i < commands.size(); i++) {
+            JsonElement el = commands.get(i);
+            if (!el.isJsonObject() || !el.getAsJsonObject().has("name")) {
+                throw new BadRequestException("Command #" + i + " has no name");
+            }
+            JsonObject command = el.getAsJsonObject();
+            JsonElement nameEl = command.get("name");
+            if (!nameEl.isJsonPrimitive() || !nameEl.getAsJsonPrimitive().isString()) {
+                throw new BadRequestException("The name of command #" + i + " is not a string");
+            }
+            String name = nameEl.getAsString();
+            MetaCommand mc = mdb.getMetaCommand(name);
+            if (mc == null) {
+                errors.add(error(i, name, "No such command"));
+            } else if (mc.isAbstract()) {
+                errors.add(error(i, name, "Abstract command"));
+                mc = null;
+            } else if (!user.hasObjectPrivilege(ObjectPrivilegeType.Command, mc.getQualifiedName())) {
+                errors.add(error(i, name, "No privilege to send this command"));
+                mc = null;
+            }
+            metaCommands.add(mc);
+
+            Map<String, Object> commandArgs = new HashMap<>();
+            if (command.has("args")) {
+                if (!command.get("args").isJsonObject()) {
+                    throw new BadRequestException("The args of command #" + i + " are not an object");
+                }
+                for (Map.Entry<String, JsonElement> arg : command.getAsJsonObject("args").entrySet()) {
+                    commandArgs.put(arg.getKey(), toArgumentValue(arg.getValue()));
+                }
+            }
+            args.add(commandArgs);
+        }
+    }
+
+    private static Object toArgumentValue(JsonElement el) {
+        if (!el.isJsonPrimitive()) {
+            return el.toString();
+        }
+        JsonPrimitive p = el.getAsJsonPrimitive();
+        if (p.isBoolean()) {
+            return p.getAsBoolean();
+        } else if (p.isNumber()) {
+            double d = p.getAsDouble();
+            long l = p.getAsLong();
+            return (l == d) ? (Object) l : (Object) d;
+        } else {
+            return p.getAsString();
+        }
+    }
+
+    /**
+     * Encodes the commands in parallel, in chunks of consecutive commands. The commands that could not be resolved
+     * (null) are skipped.
+     *
+     * @return the error message of each command (null if valid), or null if interrupted
+     */
+    private String[] encode(List<MetaCommand> metaCommands, List<Map<String, Object>> args,
+            CommandBuildResult[] results) {
+        int n = metaCommands.size();
+        String[] messages = new String[n];
+        int chunkSize = Math.max(64, (n + encodingThreads - 1) / encodingThreads);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int start = 0; start < n; start += chunkSize) {
+            int from = start;
+            int to = Math.min(n, start + chunkSize);
+            tasks.add(() -> {
+                for (int i = from; i < to; i++) {
+                    if (metaCommands.get(i) == null) {
+                        continue;
+                    }
+                    try {
+                        results[i] = templates.buildCommand(metaCommands.get(i), args.get(i));
+                    } catch (Exception e) {
+                        messages[i] = e.getMessage();
+                    }
+                }
+                return null;
+            });
+        }
+        try {
+            encoder.invokeAll(tasks);
+            return messages;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Passes the commands to the commanding manager, in order, with at most maxInFlight of them not yet sent by the
+     * link.
+     *
+     * @return null if all the commands were sent, or the reason why the stack was aborted
+     */
+    private String send(User user, String origin, List<MetaCommand> metaCommands, List<Map<String, Object>> args,
+            CommandBuildResult[] results, Stack stack) {
+        try {
+            for (int i = 0; i < results.length; i++) {
+                if (!stack.inFlight.tryAcquire(ackTimeout, TimeUnit.MILLISECONDS)) {
+                    return "Aborted at command #" + i + ": no command sent by the link for " + ackTimeout + " ms";
+                }
+                // Prepared as if the binary had been given by the user, then with the values of the arguments
+                PreparedCommand pc = commander.buildRawCommand(metaCommands.get(i), results[i].getCmdPacket(),
+                        origin, seqNum.getAndIncrement(), user);
+                pc.setRaw(false);
+                pc.setArgAssignment(results[i].getArgs(), new HashSet<>(args.get(i).keySet()));
+
+                CommandId cmdId = pc.getCommandId();
+                pending.put(cmdId, stack);
+                try {
+                    commander.sendCommand(user, pc);
+                } catch (RuntimeException e) {
+                    // The command is not in flight
+                    pending.remove(cmdId);
+                    stack.inFlight.release();
+                    log.warn("Cannot send command #{} of a stack", i, e);
+                    return "Aborted at command #" + i + ": " + e;
+                }
+                stack.sent++;
+            }
+            // Wait for the last commands in flight
+            if (!stack.inFlight.tryAcquire(maxInFlight, ackTimeout, TimeUnit.MILLISECONDS)) {
+                return "The link did not send all the commands within " + ackTimeout + " ms";
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Interrupted";
+        } finally {
+            pending.values().removeIf(s -> s == stack);
+        }
+    }
+
+    /**
+     * @return the number of commands passed on and not yet sent by the link
+     */
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void addedCommand(PreparedCommand pc) {
+        // Ignored
+    }
+
+    @Override
+    public void updatedCommand(CommandId cmdId, long changeDate, List<Attribute> attrs) {
+        for (Attribute a : attrs) {
+            String key = a.getKey();
+            if (!SENT_STATUS.equals(key) && !COMPLETE_STATUS.equals(key)) {
+                continue;
+            }
+            String status = a.getValue().getStringValue();
+            if ("PENDING".equals(status)) {
+                continue;
+            }
+            Stack stack = pending.remove(cmdId);
+            if (stack != null) {
+                if (!"OK".equals(status)) {
+                    stack.failed.incrementAndGet();
+                }
+                stack.inFlight.release();
+            }
+        }
+    }
+
+    @Override
+    public List<ParameterValue> getSystemParameters(long gentime) {
+        List<ParameterValue> list = new ArrayList<>();
+        double commandsPerSecond = lastCommandsPerSecond;
+        if (!Double.isNaN(commandsPerSecond)) {
+            list.add(SystemParametersService.getPV(spCommandsPerSecond, gentime, commandsPerSecond));
+        }
+        templates.collectSystemParameters(gentime, list);
+        return list;
+    }
+
+    private static JsonObject error(int index, String name, String message) {
+        JsonObject error = new JsonObject();
+        if (index >= 0) {
+            error.addProperty("index", index);
+        }
+        if (name != null) {
+            error.addProperty("name", name);
+        }
+        error.addProperty("message", message);
+        return error;
+    }
+
+    private static void sendJson(HandlerContext ctx, HttpResponseStatus status, JsonObject body) {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status,
+                Unpooled.wrappedBuffer(bytes));
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, bytes.length);
+        HttpRequestHandler.sendResponse(ctx.getNettyChannelHandlerContext(), ctx.getNettyHttpRequest(), response);
+    }
+
+    /**
+     * The commanding manager of the processor, as used by the service.
+     */
+    interface Commander {
+        PreparedCommand buildRawCommand(MetaCommand mc, byte[] binary, String origin, int seqNum, User user);
+
+        void sendCommand(User user, PreparedCommand pc);
+    }
+
+    /**
+     * Status and JSON body of the response to a stack request.
+     */
+    static class Response {
+        final HttpResponseStatus status;
+        final JsonObject body;
+
+        Response(HttpResponseStatus status, JsonObject body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Progress of a stack being sent.
+     */
+    static class Stack {
+        final Semaphore inFlight;
+        final AtomicInteger failed = new AtomicInteger();
+        // Only accessed by the sender thread
+        int sent;
+
+        Stack(int maxInFlight) {
+            inFlight = new Semaphore(maxInFlight);
+        }
+    }
+
+    /**
+     * Handles {@code POST /bulk-commands/<instance>}.
+     * <p>
+     * The body is collected, up to maxRequestSize, by handlers added after the Yamcs request handler, in the same way
+     * Yamcs does for its own routes. It is then processed in the sender thread of the service of the instance.
+     */
+    static class BulkCommandHandler extends HttpHandler {
+
+        @Override
+        public boolean requireAuth() {
+            return true;
+        }
+
+        @Override
+        public void handle(HandlerContext ctx) {
+            ctx.requirePOST();
+            String[] path = ctx.getPathWithoutContext().split("/");
+            String instance = (path.length > 2) ? path[2] : null;
+            BulkCommandService service = (instance == null) ? null : services.get(instance);
+            if (service == null || !service.isRunning()) {
+                throw new NotFoundException("No bulk command service for instance " + instance);
+            }
+
+            ChannelHandlerContext nettyCtx = ctx.getNettyChannelHandlerContext();
+            nettyCtx.pipeline().addLast(new HttpObjectAggregator(service.maxRequestSize),
+                    new SimpleChannelInboundHandler<FullHttpRequest>() {
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext c, FullHttpRequest req) {
+                            String body = req.content().toString(StandardCharsets.UTF_8);
+                            service.sender.execute(() -> service.processStack(ctx, body));
+                        }
+                    });
+            nettyCtx.fireChannelRead(ctx.getNettyHttpRequest());
+        }
+    }
+}
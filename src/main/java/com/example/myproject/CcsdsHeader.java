@@ -0,0 +1,89 @@
+package com.example.myproject;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Access to the fields of the CCSDS primary header, directly in the packet byte array.
+ * <p>
+ * The header words are read with big-endian array view {@link VarHandle}s, which compile to plain loads and do not
+ * allocate, unlike wrapping the array in a {@link java.nio.ByteBuffer}. Most fields are extracted from the first
+ * 32-bit word (APID and sequence count, with the flags), which the preprocessing stages pass around as an int.
+ */
+public final class CcsdsHeader {
+
+    public static final int PRIMARY_HEADER_LENGTH = 6;
+
+    public static final int SEQ_FLAGS_CONTINUATION = 0;
+    public static final int SEQ_FLAGS_FIRST = 1;
+    public static final int SEQ_FLAGS_LAST = 2;
+    public static final int SEQ_FLAGS_UNSEGMENTED = 3;
+
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+
+    private CcsdsHeader() {
+    }
+
+    /**
+     * @return the first 32 bits of the packet starting at {@code offset}: version, type, secondary header flag, APID,
+     *         sequence flags and sequence count
+     */
+    public static int apidSeqCount(byte[] bytes, int offset) {
+        return (int) INT.get(bytes, offset);
+    }
+
+    public static int apidSeqCount(byte[] bytes) {
+        return (int) INT.get(bytes, 0);
+    }
+
+    public static int apid(int apidSeqCount) {
+        return (apidSeqCount >>> 16) & 0x07FF;
+    }
+
+    public static int apid(byte[] bytes) {
+        return (((short) SHORT.get(bytes, 0)) & 0x07FF);
+    }
+
+    public static boolean hasSecondaryHeader(int apidSeqCount) {
+        return (apidSeqCount & 0x08000000) != 0;
+    }
+
+    public static int seqFlags(int apidSeqCount) {
+        return (apidSeqCount >>> 14) & 0x03;
+    }
+
+    public static int seqCount(int apidSeqCount) {
+        return apidSeqCount & 0x3FFF;
+    }
+
+    /**
+     * @return the total length of the packet starting at {@code offset}, from its packet length field
+     */
+    public static int packetLength(byte[] bytes, int offset) {
+        return (((short) SHORT.get(bytes, offset + 4)) & 0xFFFF) + 7;
+    }
+
+    /**
+     * Sets the packet length field of the packet at the start of {@code bytes} to match its total length.
+     */
+    public static void setPacketLength(byte[] bytes, int totalLength) {
+        SHORT.set(bytes, 4, (short) (totalLength - 7));
+    }
+
+    /**
+     * Sets the sequence count of the packet at the start of {@code bytes}, keeping its sequence flags.
+     */
+    public static void setSeqCount(byte[] bytes, int seqCount) {
+        short word = (short) SHORT.get(bytes, 2);
+        SHORT.set(bytes, 2, (short) ((word & 0xC000) | (seqCount & 0x3FFF)));
+    }
+
+    /**
+     * Sets the sequence flags of the packet at the start of {@code bytes}.
+     */
+    public static void setSeqFlags(byte[] bytes, int flags) {
+        bytes[2] = (byte) ((bytes[2] & 0x3F) | (flags << 6));
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.myproject;
+
+import org.yamcs.time.TimeDecoder;
+import org.yamcs.utils.ByteArrayUtils;
+
+/**
+ * Decodes a CCSDS Day Segmented (CDS) time code without P-field: a day count, the milliseconds of the day and an
+ * optional sub-millisecond field, which is ignored.
+ * <p>
+ * The decoded value is the number of milliseconds since the epoch, to be shifted to Yamcs time by the preprocessor.
+ */
+public class CdsTimeDecoder implements TimeDecoder {
+
+    private final int daysSize;
+
+    /**
+     * @param daysSize
+     *            size of the day segment in bytes, 2 or 3
+     */
+    public CdsTimeDecoder(int daysSize) {
+        if (daysSize != 2 && daysSize != 3) {
+            throw new IllegalArgumentException("Invalid CDS day segment size " + daysSize);
+        }
+        this.daysSize = daysSize;
+    }
+
+    @Override
+    public long decode(byte[] buf, int offset) {
+        long days = (daysSize == 2) ? ByteArrayUtils.decodeUnsignedShort(buf, offset)
+                : ByteArrayUtils.decodeUnsigned3Bytes(buf, offset);
+        long millis = ByteArrayUtils.decodeInt(buf, offset + daysSize) & 0xFFFFFFFFL;
+        return days * 86_400_000L + millis;
+    }
+
+    @Override
+    public long decodeRaw(byte[] buf, int offset) {
+        return decode(buf, offset);
+    }
+
+    @Override
+    public String toString() {
+        return "CdsTimeDecoder [daysSize=" + daysSize + "]";
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.myproject;
+
+/**
+ * Estimates the offset and drift of the onboard clock with respect to the ground clock, by linear regression of the
+ * difference (ground time - onboard time) over the onboard time.
+ * <p>
+ * The regression is computed incrementally, with a weighted mean and covariance updated in O(1) for each sample.
+ * Older samples are forgotten exponentially, so that the estimate follows a slowly changing drift: the window is the
+ * number of samples that effectively contribute to it. The ground time of a sample is its reception time minus the
+ * configured downlink delay, so that the offset only includes the clock difference.
+ * <p>
+ * The times are relative to the first sample, so that the doubles keep millisecond precision.
+ */
+public class ClockDriftEstimator {
+
+    private final double forgetting;
+    private final long minSamples;
+
+    private long numSamples;
+    private long origin;
+    private long lastOnboardTime;
+    private double weight;
+    private double meanX;
+    private double meanY;
+    private double covXX;
+    private double covXY;
+
+    /**
+     * @param window
+     *            number of samples over which the regression is effectively computed
+     * @param minSamples
+     *            number of samples before the estimate is considered valid
+     */
+    public ClockDriftEstimator(int window, long minSamples) {
+        this.forgetting = 1.0 - 1.0 / window;
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * Adds a pair of onboard and ground times, in Yamcs time (milliseconds).
+     */
+    public synchronized void add(long onboardTime, long groundTime) {
+        if (numSamples++ == 0) {
+            origin = onboardTime;
+        }
+        lastOnboardTime = onboardTime;
+        double x = onboardTime - origin;
+        double y = groundTime - onboardTime;
+
+        double previousWeight = forgetting * weight;
+        weight = previousWeight + 1;
+        double dx = x - meanX;
+        double dy = y - meanY;
+        double f = previousWeight / weight;
+        covXX = forgetting * covXX + f * dx * dx;
+        covXY = forgetting * covXY + f * dx * dy;
+        meanX += dx / weight;
+        meanY += dy / weight;
+    }
+
+    /**
+     * @return true if enough samples have been received for the estimate to be used
+     */
+    public synchronized boolean isValid() {
+        return numSamples >= minSamples;
+    }
+
+    /**
+     * @return the drift of the onboard clock, in milliseconds of ground time gained per millisecond of onboard time.
+     *         Positive when the onboard clock is slow.
+     */
+    public synchronized double getDrift() {
+        return covXX > 0 ? covXY / covXX : 0;
+    }
+
+    /**
+     * @return the estimated difference (ground time - onboard time) in milliseconds, at the given onboard time
+     */
+    public synchronized double getOffset(long onboardTime) {
+        return meanY + getDrift() * (onboardTime - origin - meanX);
+    }
+
+    /**
+     * @return the estimated difference (ground time - onboard time) in milliseconds, at the time of the last sample
+     */
+    public synchronized double getCurrentOffset() {
+        return getOffset(lastOnboardTime);
+    }
+
+    /**
+     * @return the onboard time converted to ground time
+     */
+    public long correct(long onboardTime) {
+        return onboardTime + Math.round(getOffset(onboardTime));
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.myproject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.yamcs.StandardTupleDefinitions;
+import org.yamcs.cmdhistory.CommandHistoryPublisher;
+import org.yamcs.cmdhistory.CommandHistoryPublisher.AckStatus;
+import org.yamcs.cmdhistory.StreamCommandHistoryPublisher;
+import org.yamcs.protobuf.Commanding.CommandId;
+import org.yamcs.yarch.DataType;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.TupleDefinition;
+
+/**
+ * Collects several command history attributes of a command, and publishes them together.
+ * <p>
+ * {@link CommandHistoryPublisher#publish} emits one tuple, and causes one write to the command history table, for each
+ * attribute. When the publisher writes to a stream, as is the case for links, the attributes collected here are
+ * emitted as a single tuple with one column per attribute, in the same way Yamcs publishes the status, time and
+ * message of an acknowledgment. Otherwise, they are published one by one.
+ *
+ * <pre>
+ * new CommandHistoryBatch(commandHistory, pc.getCommandId())
+ *         .add("ccsds-seqcount", seqCount)
+ *         .add(PreparedCommand.CNAME_BINARY, binary)
+ *         .publish();
+ * </pre>
+ */
+public class CommandHistoryBatch {
+
+    private final CommandHistoryPublisher publisher;
+    private final CommandId cmdId;
+    private final List<String> keys = new ArrayList<>(4);
+    private final List<DataType> types = new ArrayList<>(4);
+    private final List<Object> values = new ArrayList<>(4);
+    private final List<Ack> acks = new ArrayList<>(1);
+
+    public CommandHistoryBatch(CommandHistoryPublisher publisher, CommandId cmdId) {
+        this.publisher = publisher;
+        this.cmdId = cmdId;
+    }
+
+    public CommandHistoryBatch add(String key, int value) {
+        return add(key, DataType.INT, value);
+    }
+
+    // Yamcs stores the long attributes as timestamps, so does this
+    public CommandHistoryBatch add(String key, long value) {
+        return add(key, DataType.TIMESTAMP, value);
+    }
+
+    public CommandHistoryBatch add(String key, String value) {
+        return add(key, DataType.STRING, value);
+    }
+
+    public CommandHistoryBatch add(String key, byte[] value) {
+        return add(key, DataType.BINARY, value);
+    }
+
+    /**
+     * Adds the status and time of an acknowledgment, such as {@link CommandHistoryPublisher#AcknowledgeSent_KEY}.
+     */
+    public CommandHistoryBatch addAck(String key, long time, AckStatus status) {
+        acks.add(new Ack(key, time, status));
+        return this;
+    }
+
+    private CommandHistoryBatch add(String key, DataType type, Object value) {
+        keys.add(key);
+        types.add(type);
+        values.add(value);
+        return this;
+    }
+
+    /**
+     * Publishes all the attributes added so far.
+     */
+    public void publish() {
+        if (keys.isEmpty() && acks.isEmpty()) {
+            return;
+        }
+        if (publisher instanceof StreamCommandHistoryPublisher) {
+            TupleDefinition td = StandardTupleDefinitions.TC.copy();
+            List<Object> columns = new ArrayList<>(4 + 2 * acks.size() + values.size());
+            columns.add(cmdId.getGenerationTime());
+            columns.add(cmdId.getOrigin());
+            columns.add(cmdId.getSequenceNumber());
+            columns.add(cmdId.getCommandName());
+            // Same columns as CommandHistoryPublisher#publishAck
+            for (Ack ack : acks) {
+                td.addColumn(ack.key + CommandHistoryPublisher.SUFFIX_STATUS, DataType.STRING);
+                td.addColumn(ack.key + CommandHistoryPublisher.SUFFIX_TIME, DataType.TIMESTAMP);
+                columns.add(ack.status.toString());
+                columns.add(ack.time);
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                td.addColumn(keys.get(i), types.get(i));
+                columns.add(values.get(i));
+            }
+            ((StreamCommandHistoryPublisher) publisher).getStream().emitTuple(new Tuple(td, columns));
+        } else {
+            for (Ack ack : acks) {
+                publisher.publishAck(cmdId, ack.key, ack.time, ack.status);
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                publishOne(keys.get(i), values.get(i));
+            }
+        }
+    }
+
+    private void publishOne(String key, Object value) {
+        if (value instanceof Integer) {
+            publisher.publish(cmdId, key, (Integer) value);
+        } else if (value instanceof Long) {
+            publisher.publish(cmdId, key, (Long) value);
+        } else if (value instanceof String) {
+            publisher.publish(cmdId, key, (String) value);
+        } else {
+            publisher.publish(cmdId, key, (byte[]) value);
+        }
+    }
+
+    static class Ack {
+        final String key;
+        final long time;
+        final AckStatus status;
+
+        Ack(String key, long time, AckStatus status) {
+            this.key = key;
+            this.time = time;
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.myproject;
+
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.yamcs.ErrorInCommand;
+import org.yamcs.commanding.ArgumentValue;
+import org.yamcs.mdb.MetaCommandProcessor;
+import org.yamcs.mdb.ProcessorData;
+import org.yamcs.parameter.Value;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.xtce.Argument;
+import org.yamcs.xtce.ArgumentAssignment;
+import org.yamcs.xtce.ArgumentEntry;
+import org.yamcs.xtce.ArgumentType;
+import org.yamcs.xtce.BaseDataType;
+import org.yamcs.xtce.Container;
+import org.yamcs.xtce.DataEncoding;
+import org.yamcs.xtce.EnumeratedArgumentType;
+import org.yamcs.xtce.FixedValueEntry;
+import org.yamcs.xtce.IntegerArgumentType;
+import org.yamcs.xtce.IntegerDataEncoding;
+import org.yamcs.xtce.IntegerValidRange;
+import org.yamcs.xtce.MetaCommand;
+import org.yamcs.xtce.SequenceEntry;
+import org.yamcs.xtce.SequenceEntry.ReferenceLocationType;
+import org.yamcs.xtce.ValueEnumeration;
+
+/**
+ * Precompiled binary of a command, where only the arguments set by the user are patched in.
+ * <p>
+ * The template is the binary produced by the XTCE encoding of the command, with the fixed values of the whole
+ * inheritance chain (e.g. the CCSDS version, type and APID assigned in {@code MyProjectPacket} and the Packet_ID
+ * assigned in {@code SwitchVoltageOn}) already in place. The position of the other arguments is computed once from the
+ * entries of the command containers, so that encoding a command is a copy of the template and a few bit writes.
+ * <p>
+ * Only commands whose free arguments are plain integers or enumerations, with a fixed size integer encoding and no
+ * calibration, can be precompiled. The layout is checked against the XTCE encoding of sample values before the
+ * template is used.
+ */
+public class CommandTemplate {
+
+    private static final long INVALID = Long.MIN_VALUE;
+
+    private final MetaCommand metaCommand;
+    private final byte[] template;
+    private final Field[] fields;
+
+    private CommandTemplate(MetaCommand metaCommand, byte[] template, Field[] fields) {
+        this.metaCommand = metaCommand;
+        this.template = template;
+        this.fields = fields;
+    }
+
+    public MetaCommand getMetaCommand() {
+        return metaCommand;
+    }
+
+    /**
+     * @return the number of arguments patched in the template
+     */
+    public int getArgumentCount() {
+        return fields.length;
+    }
+
+    List<Field> getFields() {
+        return Arrays.asList(fields);
+    }
+
+    /**
+     * @return valid values of the arguments patched in the template, the lowest of their range
+     */
+    public Map<String, Object> getSampleArguments() {
+        return sample(Arrays.asList(fields), true);
+    }
+
+    /**
+     * Encodes the command with the given argument values.
+     * <p>
+     * Anything that the template does not handle in the same way as the XTCE encoding (an unknown or missing argument,
+     * a value that cannot be converted or is out of range) returns null. The caller then uses the XTCE encoding,
+     * which reports the error.
+     *
+     * @return the command binary, or null if the arguments cannot be encoded with the template
+     */
+    public byte[] encode(Map<String, Object> args) {
+        return encode(args, null);
+    }
+
+    /**
+     * Encodes the command with the given argument values, and collects the values of the patched arguments.
+     *
+     * @param values
+     *            receives the value of each patched argument, including the default ones; may be null
+     * @return the command binary, or null if the arguments cannot be encoded with the template
+     */
+    public byte[] encode(Map<String, Object> args, Map<Argument, ArgumentValue> values) {
+        byte[] binary = template.clone();
+        int assigned = 0;
+        for (Field f : fields) {
+            Object value = args.get(f.argument.getName());
+            long raw;
+            if (value == null) {
+                raw = f.initialValue;
+            } else {
+                raw = f.toRaw(value);
+                assigned++;
+            }
+            if (raw == INVALID) {
+                return null;
+            }
+            putBits(binary, f.offset, f.size, raw);
+            if (values != null) {
+                values.put(f.argument, new ArgumentValue(f.argument, f.toValue(raw)));
+            }
+        }
+        return (assigned == args.size()) ? binary : null;
+    }
+
+    /**
+     * Writes the {@code size} lowest bits of {@code value} at the bit {@code offset} of {@code bytes}, most significant
+     * bit first.
+     */
+    static void putBits(byte[] bytes, int offset, int size, long value) {
+        int pos = offset + size;
+        while (pos > offset) {
+            int idx = (pos - 1) >>> 3;
+            int start = Math.max(offset, idx << 3);
+            int n = pos - start;
+            int shift = ((idx + 1) << 3) - pos;
+            int mask = ((1 << n) - 1) << shift;
+            bytes[idx] = (byte) ((bytes[idx] & ~mask) | (((int) value << shift) & mask));
+            value >>>= n;
+            pos = start;
+        }
+    }
+
+    /**
+     * Builds the template of a command.
+     *
+     * @return the template, or null if the command cannot be precompiled
+     * @throws ErrorInCommand
+     *             if the XTCE encoding of the sample values fails
+     */
+    static CommandTemplate compile(ProcessorData pdata, MetaCommand mc) throws ErrorInCommand {
+        if (mc.isAbstract() || mc.getCommandContainer() == null) {
+            return null;
+        }
+        Map<Argument, int[]> layout = layout(mc);
+        if (layout == null) {
+            return null;
+        }
+
+        Set<String> assignedInDefinition = new HashSet<>();
+        List<ArgumentAssignment> assignments = mc.getEffectiveArgumentAssignmentList();
+        if (assignments != null) {
+            for (ArgumentAssignment aa : assignments) {
+                assignedInDefinition.add(aa.getArgumentName());
+            }
+        }
+        List<Field> fields = new ArrayList<>();
+        for (Argument arg : mc.getEffectiveArgumentList()) {
+            if (assignedInDefinition.contains(arg.getName())) {
+                continue;
+            }
+            int[] position = layout.get(arg);
+            if (position == null) {
+                return null;
+            }
+            Field f = Field.create(arg, position[0], position[1]);
+            if (f == null) {
+                return null;
+            }
+            fields.add(f);
+        }
+
+        // Sample values at both ends of the ranges, which set different bits of each field.
+        // If all arguments have a default value, they can also be omitted.
+        List<Map<String, Object>> samples = new ArrayList<>();
+        samples.add(sample(fields, true));
+        samples.add(sample(fields, false));
+        if (fields.stream().allMatch(f -> f.initialValue != INVALID)) {
+            samples.add(Map.of());
+        }
+
+        byte[] template = MetaCommandProcessor.buildCommand(pdata, mc, samples.get(0)).getCmdPacket();
+        CommandTemplate ct = new CommandTemplate(mc, template, fields.toArray(new Field[0]));
+        for (Map<String, Object> sample : samples) {
+            byte[] expected = MetaCommandProcessor.buildCommand(pdata, mc, sample).getCmdPacket();
+            if (!Arrays.equals(expected, ct.encode(sample))) {
+                return null;
+            }
+        }
+        return ct;
+    }
+
+    private static Map<String, Object> sample(List<Field> fields, boolean low) {
+        Map<String, Object> sample = new HashMap<>();
+        for (Field f : fields) {
+            if (f.enumType != null) {
+                List<ValueEnumeration> list = f.enumType.getValueEnumerationList();
+                sample.put(f.argument.getName(), list.get(low ? 0 : list.size() - 1).getLabel());
+            } else {
+                sample.put(f.argument.getName(), low ? f.min : f.max);
+            }
+        }
+        return sample;
+    }
+
+    /**
+     * Computes the bit offset and size of the arguments of a command, walking the entries from the base container to
+     * the container of the command.
+     *
+     * @return the position of each argument, or null if an entry has a conditional or variable position
+     */
+    private static Map<Argument, int[]> layout(MetaCommand mc) {
+        Deque<Container> chain = new ArrayDeque<>();
+        for (Container c = mc.getCommandContainer(); c != null; c = c.getBaseContainer()) {
+            chain.addFirst(c);
+        }
+        Map<Argument, int[]> layout = new HashMap<>();
+        int position = 0;
+        for (Container c : chain) {
+            for (SequenceEntry entry : c.getEntryList()) {
+                if (entry.getRepeatEntry() != null || entry.getIncludeCondition() != null) {
+                    return null;
+                }
+                int start = entry.getLocationInContainerInBits();
+                if (entry.getReferenceLocation() == ReferenceLocationType.PREVIOUS_ENTRY) {
+                    start += position;
+                }
+                int size;
+                if (entry instanceof ArgumentEntry) {
+                    Argument arg = ((ArgumentEntry) entry).getArgument();
+                    DataEncoding encoding = getEncoding(arg.getArgumentType());
+                    if (encoding == null || encoding.getSizeInBits() <= 0) {
+                        return null;
+                    }
+                    size = encoding.getSizeInBits();
+                    layout.put(arg, new int[] { start, size });
+                } else if (entry instanceof FixedValueEntry) {
+                    size = ((FixedValueEntry) entry).getSizeInBits();
+                } else {
+                    return null;
+                }
+                position = start + size;
+            }
+        }
+        return layout;
+    }
+
+    private static DataEncoding getEncoding(ArgumentType type) {
+        return (type instanceof BaseDataType) ? ((BaseDataType) type).getEncoding() : null;
+    }
+
+    /**
+     * Argument patched in the template, with its position and the range of its raw value.
+     */
+    static class Field {
+        final Argument argument;
+        final int offset;
+        final int size;
+        final long min;
+        final long max;
+        final EnumeratedArgumentType enumType;
+        long initialValue = INVALID;
+
+        private Field(Argument argument, int offset, int size, long min, long max, EnumeratedArgumentType enumType) {
+            this.argument = argument;
+            this.offset = offset;
+            this.size = size;
+            this.min = min;
+            this.max = max;
+            this.enumType = enumType;
+        }
+
+        static Field create(Argument arg, int offset, int size) {
+            ArgumentType type = arg.getArgumentType();
+            if (!(type instanceof IntegerArgumentType || type instanceof EnumeratedArgumentType)
+                    || !(getEncoding(type) instanceof IntegerDataEncoding)) {
+                return null;
+            }
+            IntegerDataEncoding encoding = (IntegerDataEncoding) getEncoding(type);
+            if (size > 63 || encoding.getByteOrder() != ByteOrder.BIG_ENDIAN
+                    || encoding.getDefaultCalibrator() != null
+                    || (encoding.getContextCalibratorList() != null && !encoding.getContextCalibratorList().isEmpty())
+                    || encoding.getToBinaryTransformAlgorithm() != null) {
+                return null;
+            }
+
+            long min;
+            long max;
+            switch (encoding.getEncoding()) {
+            case UNSIGNED:
+                min = 0;
+                max = (1L << size) - 1;
+                break;
+            case TWOS_COMPLEMENT:
+                min = -(1L << (size - 1));
+                max = (1L << (size - 1)) - 1;
+                break;
+            default:
+                return null;
+            }
+
+            Field f;
+            if (type instanceof IntegerArgumentType) {
+                IntegerArgumentType itype = (IntegerArgumentType) type;
+                if (!itype.isSigned()) {
+                    min = Math.max(min, 0);
+                }
+                IntegerValidRange range = itype.getValidRange();
+                if (range != null) {
+                    min = Math.max(min, range.getMinInclusive());
+                    max = Math.min(max, range.getMaxInclusive());
+                }
+                f = new Field(arg, offset, size, min, max, null);
+            } else {
+                EnumeratedArgumentType etype = (EnumeratedArgumentType) type;
+                if (etype.getValueEnumerationList().isEmpty()
+                        || (etype.getValueEnumerationRangeList() != null
+                                && !etype.getValueEnumerationRangeList().isEmpty())) {
+                    return null;
+                }
+                f = new Field(arg, offset, size, min, max, etype);
+            }
+            if (min > max) {
+                return null;
+            }
+
+            Object initialValue = arg.getInitialValue() != null ? arg.getInitialValue() : type.getInitialValue();
+            if (initialValue != null) {
+                f.initialValue = f.toRaw(initialValue);
+                if (f.initialValue == INVALID) {
+                    return null;
+                }
+            }
+            return f;
+        }
+
+        Value toValue(long raw) {
+            if (enumType != null) {
+                return ValueUtility.getEnumeratedValue(raw, enumType.enumValue(raw).getLabel());
+            }
+            IntegerArgumentType itype = (IntegerArgumentType) argument.getArgumentType();
+            if (itype.isSigned()) {
+                return itype.getSizeInBits() <= 32 ? ValueUtility.getSint32Value((int) raw)
+                        : ValueUtility.getSint64Value(raw);
+            } else {
+                return itype.getSizeInBits() <= 32 ? ValueUtility.getUint32Value((int) raw)
+                        : ValueUtility.getUint64Value(raw);
+            }
+        }
+
+        /**
+         * @return the raw value of the argument, or {@link CommandTemplate#INVALID}
+         */
+        long toRaw(Object value) {
+            long raw;
+            if (enumType != null) {
+                if (!(value instanceof String)) {
+                    return INVALID;
+                }
+                ValueEnumeration ve = enumType.enumValue((String) value);
+                if (ve == null) {
+                    return INVALID;
+                }
+                raw = ve.getValue();
+            } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                    || value instanceof Byte) {
+                raw = ((Number) value).longValue();
+            } else if (value instanceof String) {
+                try {
+                    raw = Long.decode(((String) value).trim());
+                } catch (NumberFormatException e) {
+                    return INVALID;
+                }
+            } else {
+                return INVALID;
+            }
+            return (raw < min || raw > max) ? INVALID : raw;
+        }
+    }
+}
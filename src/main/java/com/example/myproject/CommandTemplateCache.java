@@ -0,0 +1,160 @@
+package com.example.myproject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.yamcs.ErrorInCommand;
+import org.yamcs.commanding.ArgumentValue;
+import org.yamcs.logging.Log;
+import org.yamcs.mdb.MetaCommandProcessor;
+import org.yamcs.mdb.MetaCommandProcessor.CommandBuildResult;
+import org.yamcs.mdb.ProcessorData;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersService;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.xtce.Argument;
+import org.yamcs.xtce.MetaCommand;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.UnitType;
+
+/**
+ * Encodes commands with their {@link CommandTemplate}, compiled on first use, or with the XTCE encoding of Yamcs for
+ * the commands and arguments that the templates do not handle.
+ * <p>
+ * When a template is compiled, both encodings are timed on the same arguments and logged. The time spent in each
+ * encoding afterwards is published as system parameters.
+ */
+public class CommandTemplateCache {
+
+    private static final Log log = new Log(CommandTemplateCache.class);
+    private static final UnitType MICROSECONDS = new UnitType("us");
+
+    // Number of encodings timed when a template is compiled
+    private static final int CALIBRATION_RUNS = 101;
+
+    private final ProcessorData pdata;
+    private final Map<MetaCommand, Optional<CommandTemplate>> templates = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram xtceHistogram = new LatencyHistogram();
+    private final LatencyHistogram templateHistogram = new LatencyHistogram();
+
+    private Parameter spXtceP50;
+    private Parameter spXtceP99;
+    private Parameter spTemplateP50;
+    private Parameter spTemplateP99;
+
+    public CommandTemplateCache(ProcessorData pdata) {
+        this.pdata = pdata;
+    }
+
+    /**
+     * Compiles the templates of all the commands of the MDB, so that the first commands do not pay for it.
+     */
+    public void compileAll() {
+        for (MetaCommand mc : pdata.getMdb().getMetaCommands()) {
+            if (!mc.isAbstract()) {
+                getTemplate(mc);
+            }
+        }
+    }
+
+    /**
+     * @return the template of the command, or null if it cannot be precompiled
+     */
+    public CommandTemplate getTemplate(MetaCommand mc) {
+        return templates.computeIfAbsent(mc, this::compile).orElse(null);
+    }
+
+    private Optional<CommandTemplate> compile(MetaCommand mc) {
+        try {
+            CommandTemplate ct = CommandTemplate.compile(pdata, mc);
+            if (ct == null) {
+                log.debug("Command {} cannot be precompiled, it will use the XTCE encoding", mc.getQualifiedName());
+            } else {
+                calibrate(ct);
+            }
+            return Optional.ofNullable(ct);
+        } catch (ErrorInCommand e) {
+            log.warn("Cannot precompile command {}: {}", mc.getQualifiedName(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    // Times both encodings of the command on the same arguments
+    private void calibrate(CommandTemplate ct) throws ErrorInCommand {
+        MetaCommand mc = ct.getMetaCommand();
+        Map<String, Object> args = ct.getSampleArguments();
+        long[] xtce = new long[CALIBRATION_RUNS];
+        long[] template = new long[CALIBRATION_RUNS];
+        for (int i = 0; i < CALIBRATION_RUNS; i++) {
+            long t0 = System.nanoTime();
+            MetaCommandProcessor.buildCommand(pdata, mc, args);
+            long t1 = System.nanoTime();
+            ct.encode(args);
+            long t2 = System.nanoTime();
+            xtce[i] = t1 - t0;
+            template[i] = t2 - t1;
+        }
+        Arrays.sort(xtce);
+        Arrays.sort(template);
+        log.info("Precompiled command {} ({} arguments): median encoding time {} us with XTCE, {} us with the template",
+                mc.getQualifiedName(), ct.getArgumentCount(), xtce[CALIBRATION_RUNS / 2] / 1000.0,
+                template[CALIBRATION_RUNS / 2] / 1000.0);
+    }
+
+    /**
+     * Encodes a command.
+     *
+     * @return the command binary and the values of its arguments
+     * @throws ErrorInCommand
+     *             if the arguments are not valid
+     */
+    public CommandBuildResult buildCommand(MetaCommand mc, Map<String, Object> args) throws ErrorInCommand {
+        long t0 = System.nanoTime();
+        CommandTemplate ct = getTemplate(mc);
+        if (ct != null) {
+            Map<Argument, ArgumentValue> values = new HashMap<>();
+            byte[] binary = ct.encode(args, values);
+            if (binary != null) {
+                templateHistogram.record(System.nanoTime() - t0);
+                return new CommandBuildResult(binary, values);
+            }
+        }
+        CommandBuildResult result = MetaCommandProcessor.buildCommand(pdata, mc, args);
+        xtceHistogram.record(System.nanoTime() - t0);
+        return result;
+    }
+
+    public void setupSystemParameters(SystemParametersService sps, String namespace) {
+        String prefix = namespace + "/encoding/";
+        spXtceP50 = createParameter(sps, prefix + "xtce/p50", "50th percentile", "XTCE encoding");
+        spXtceP99 = createParameter(sps, prefix + "xtce/p99", "99th percentile", "XTCE encoding");
+        spTemplateP50 = createParameter(sps, prefix + "template/p50", "50th percentile", "template encoding");
+        spTemplateP99 = createParameter(sps, prefix + "template/p99", "99th percentile", "template encoding");
+    }
+
+    private static Parameter createParameter(SystemParametersService sps, String name, String what, String how) {
+        return sps.createSystemParameter(name, Type.DOUBLE, MICROSECONDS,
+                what + " of the time to encode a command with the " + how + " since the previous collection");
+    }
+
+    public void collectSystemParameters(long time, List<ParameterValue> list) {
+        if (spXtceP50 == null) {
+            return;
+        }
+        collect(xtceHistogram.snapshotAndReset(), time, spXtceP50, spXtceP99, list);
+        collect(templateHistogram.snapshotAndReset(), time, spTemplateP50, spTemplateP99, list);
+    }
+
+    private static void collect(LatencyHistogram.Snapshot snapshot, long time, Parameter p50, Parameter p99,
+            List<ParameterValue> list) {
+        if (snapshot.getCount() > 0) {
+            list.add(SystemParametersService.getPV(p50, time, snapshot.getPercentile(0.5) / 1000.0));
+            list.add(SystemParametersService.getPV(p99, time, snapshot.getPercentile(0.99) / 1000.0));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.myproject;
+
+import org.yamcs.tctm.ErrorDetectionWordCalculator;
+
+/**
+ * CRC-16-CCITT (polynomial 0x1021, not reflected), as used for the CCSDS packet error control field.
+ * <p>
+ * Gives the same results as the Yamcs {@code CRC-16-CCIIT} calculator, but uses the slicing-by-8 algorithm: eight
+ * lookup tables allow eight input bytes to be folded into the CRC per iteration instead of one.
+ */
+public class Crc16CcittCalculator implements ErrorDetectionWordCalculator {
+
+    private static final int POLYNOMIAL = 0x1021;
+
+    // TABLES[k][b] is the CRC contribution of byte b followed by k zero bytes
+    private static final int[][] TABLES = new int[8][256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            int crc = b << 8;
+            for (int i = 0; i < 8; i++) {
+                crc = ((crc & 0x8000) != 0) ? (crc << 1) ^ POLYNOMIAL : crc << 1;
+            }
+            TABLES[0][b] = crc & 0xFFFF;
+        }
+        for (int k = 1; k < 8; k++) {
+            for (int b = 0; b < 256; b++) {
+                int prev = TABLES[k - 1][b];
+                TABLES[k][b] = ((prev << 8) ^ TABLES[0][prev >>> 8]) & 0xFFFF;
+            }
+        }
+    }
+
+    private final int initialValue;
+
+    public Crc16CcittCalculator() {
+        this(0xFFFF);
+    }
+
+    public Crc16CcittCalculator(int initialValue) {
+        this.initialValue = initialValue;
+    }
+
+    @Override
+    public int compute(byte[] data, int offset, int length) {
+        final int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+        final int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+
+        int crc = initialValue;
+        int i = offset;
+        int end = offset + length;
+        for (; i + 8 <= end; i += 8) {
+            crc = t7[((crc >>> 8) ^ data[i]) & 0xFF]
+                    ^ t6[(crc ^ data[i + 1]) & 0xFF]
+                    ^ t5[data[i + 2] & 0xFF]
+                    ^ t4[data[i + 3] & 0xFF]
+                    ^ t3[data[i + 4] & 0xFF]
+                    ^ t2[data[i + 5] & 0xFF]
+                    ^ t1[data[i + 6] & 0xFF]
+                    ^ t0[data[i + 7] & 0xFF];
+        }
+        for (; i < end; i++) {
+            crc = ((crc << 8) ^ t0[((crc >>> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    @Override
+    public int sizeInBits() {
+        return 16;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.myproject;
+
+import java.util.Arrays;
+
+import org.yamcs.TmPacket;
+import org.yamcs.tctm.TmSink;
+
+/**
+ * Splits datagrams containing several consecutive CCSDS packets, based on the packet length field of each primary
+ * header.
+ */
+public class DatagramSplitter {
+
+    /**
+     * @return the total length of the packet starting at {@code offset}, or -1 if there is no complete packet there.
+     */
+    public static int packetLength(byte[] bytes, int offset) {
+        if (offset + CcsdsHeader.PRIMARY_HEADER_LENGTH > bytes.length) {
+            return -1;
+        }
+        int length = CcsdsHeader.packetLength(bytes, offset);
+        return (offset + length <= bytes.length) ? length : -1;
+    }
+
+    /**
+     * Creates a packet from a part of the datagram, with the same reception times as the datagram.
+     */
+    public static TmPacket slice(TmPacket datagram, int offset, int length) {
+        byte[] bytes = Arrays.copyOfRange(datagram.getPacket(), offset, offset + length);
+        TmPacket packet = new TmPacket(datagram.getReceptionTime(), bytes);
+        packet.setEarthReceptionTime(datagram.getEarthReceptionTime());
+        return packet;
+    }
+
+    /**
+     * Sends each complete packet of the datagram to the sink.
+     *
+     * @return the number of trailing bytes that do not form a complete packet.
+     */
+    public static int split(TmPacket datagram, TmSink sink) {
+        byte[] bytes = datagram.getPacket();
+        int offset = 0;
+        int length;
+        while ((length = packetLength(bytes, offset)) > 0) {
+            sink.processPacket(slice(datagram, offset, length));
+            offset += length;
+        }
+        return bytes.length - offset;
+    }
+}
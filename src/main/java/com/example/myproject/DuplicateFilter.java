@@ -0,0 +1,114 @@
+package com.example.myproject;
+
+import java.util.Arrays;
+
+/**
+ * Detects packets received more than once, for example when the same downlink is received by redundant ground
+ * stations.
+ * <p>
+ * For each APID, the sequence counts seen within a sliding window behind the most recent count are kept in a bitset
+ * covering the whole 14-bit count space. A packet whose count is already in the bitset is a duplicate.
+ * <p>
+ * A count further behind than the window is taken as a restart of the counter, and so is the first count after a
+ * silence of the APID: the window of the APID starts again from that count. Otherwise, the counts that follow a
+ * restart would be dropped as duplicates of the counts seen before it, until they pass the previous most recent count.
+ * The window can also be restarted explicitly with {@link #reset(int)}.
+ */
+public class DuplicateFilter {
+
+    private static final int NUM_COUNTS = 0x4000;
+
+    private final int windowSize;
+    private final long maxSilence;
+    private final long[][] seen = new long[ApidSeqTracker.NUM_APIDS][];
+    private final int[] head = new int[ApidSeqTracker.NUM_APIDS];
+    private final long[] lastArrival = new long[ApidSeqTracker.NUM_APIDS];
+
+    /**
+     * @param windowSize
+     *            number of sequence counts, behind the most recent one, for which duplicates are detected. Must be
+     *            less than half of the count space.
+     * @param maxSilence
+     *            time in milliseconds without packets of an APID after which its window is restarted
+     */
+    public DuplicateFilter(int windowSize, long maxSilence) {
+        if (windowSize <= 0 || windowSize >= NUM_COUNTS / 2) {
+            throw new IllegalArgumentException("Invalid duplicate window size " + windowSize);
+        }
+        this.windowSize = windowSize;
+        this.maxSilence = maxSilence;
+    }
+
+    /**
+     * Records the packet and checks whether it was seen before.
+     *
+     * @param now
+     *            reception time of the packet, in milliseconds
+     * @return true if a packet with the same APID and sequence count was seen within the window.
+     */
+    public synchronized boolean isDuplicate(int apid, int seq, long now) {
+        long previousArrival = lastArrival[apid];
+        lastArrival[apid] = now;
+
+        long[] bits = seen[apid];
+        if (bits == null) {
+            bits = seen[apid] = new long[NUM_COUNTS / 64];
+            restart(apid, bits, seq);
+            return false;
+        }
+        if (now - previousArrival >= maxSilence) {
+            restart(apid, bits, seq);
+            return false;
+        }
+
+        int h = head[apid];
+        int ahead = (seq - h) & 0x3FFF;
+        if (ahead != 0 && ahead < NUM_COUNTS / 2) {
+            // Slide the window forward, forgetting the counts that fall out of it
+            int n = Math.min(ahead, windowSize);
+            for (int i = 1; i <= n; i++) {
+                clear(bits, (h - windowSize + i) & 0x3FFF);
+            }
+            head[apid] = seq;
+            set(bits, seq);
+            return false;
+        }
+
+        int behind = (h - seq) & 0x3FFF;
+        if (behind >= windowSize) {
+            restart(apid, bits, seq);
+            return false;
+        }
+        if (isSet(bits, seq)) {
+            return true;
+        }
+        set(bits, seq);
+        return false;
+    }
+
+    /**
+     * Forgets the counts seen for the APID, for example after a restart of its counter. The next count starts a new
+     * window.
+     */
+    public synchronized void reset(int apid) {
+        seen[apid] = null;
+    }
+
+    private void restart(int apid, long[] bits, int seq) {
+        Arrays.fill(bits, 0);
+        head[apid] = seq;
+        set(bits, seq);
+    }
+
+    private static boolean isSet(long[] bits, int seq) {
+        return (bits[seq >>> 6] & (1L << seq)) != 0;
+    }
+
+    private static void set(long[] bits, int seq) {
+        bits[seq >>> 6] |= 1L << seq;
+    }
+
+    private static void clear(long[] bits, int seq) {
+        bits[seq >>> 6] &= ~(1L << seq);
+    }
+}
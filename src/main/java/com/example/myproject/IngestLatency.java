@@ -0,0 +1,161 @@
+package com.example.myproject;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.yamcs.TmPacket;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersService;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.tctm.TmSink;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.UnitType;
+
+/**
+ * Measures the time between the reception of a datagram by the link and the end of the preprocessing of the packets
+ * it contains, per link and per APID.
+ * <p>
+ * It is placed in front of the sink of the link: a packet reaching it has been preprocessed. Only the packets passed
+ * on by the link thread are measured, from the reception of the datagram that caused them to be released. Packets
+ * released by the resequencer timer are not measured, their latency being mostly the configured reorder delay.
+ * <p>
+ * The percentiles are published as system parameters, over the window since the previous collection:
+ * {@code latency/p50}, {@code latency/p99} and {@code latency/p999} under the namespace of the link, and the same under
+ * {@code apid/<apid>/} for each APID, created when its first packet is measured. The last link values are also shown
+ * in the link information.
+ */
+public class IngestLatency implements TmSink {
+
+    private static final UnitType MICROSECONDS = new UnitType("us");
+
+    private final LatencyHistogram linkHistogram = new LatencyHistogram();
+    private final AtomicReferenceArray<ApidLatency> apidHistograms = new AtomicReferenceArray<>(
+            ApidSeqTracker.NUM_APIDS);
+
+    // Written and read by the link thread only
+    private Thread linkThread;
+    private long receiveNanos;
+
+    private volatile TmSink next;
+
+    private SystemParametersService sps;
+    private String namespace;
+    private Parameter spP50;
+    private Parameter spP99;
+    private Parameter spP999;
+    private volatile long[] lastPercentiles;
+
+    public void setNext(TmSink next) {
+        this.next = next;
+    }
+
+    /**
+     * Called by the link thread when a datagram has been received.
+     */
+    public void datagramReceived() {
+        linkThread = Thread.currentThread();
+        receiveNanos = System.nanoTime();
+    }
+
+    @Override
+    public void processPacket(TmPacket packet) {
+        if (Thread.currentThread() == linkThread) {
+            long latency = System.nanoTime() - receiveNanos;
+            linkHistogram.record(latency);
+            byte[] bytes = packet.getPacket();
+            if (bytes.length >= CcsdsHeader.PRIMARY_HEADER_LENGTH) {
+                getApidLatency(CcsdsHeader.apid(bytes)).histogram.record(latency);
+            }
+        }
+        next.processPacket(packet);
+    }
+
+    private ApidLatency getApidLatency(int apid) {
+        ApidLatency l = apidHistograms.get(apid);
+        if (l == null) {
+            apidHistograms.compareAndSet(apid, null, new ApidLatency());
+            l = apidHistograms.get(apid);
+        }
+        return l;
+    }
+
+    public void setupSystemParameters(SystemParametersService sps, String namespace) {
+        this.sps = sps;
+        this.namespace = namespace;
+        spP50 = createParameter(namespace + "/latency/p50", "50th percentile", "");
+        spP99 = createParameter(namespace + "/latency/p99", "99th percentile", "");
+        spP999 = createParameter(namespace + "/latency/p999", "99.9th percentile", "");
+    }
+
+    private Parameter createParameter(String name, String what, String apidText) {
+        return sps.createSystemParameter(name, Type.DOUBLE, MICROSECONDS,
+                what + " of the ingest latency" + apidText + " since the previous collection");
+    }
+
+    /**
+     * Publishes the percentiles of the last window and starts a new one. Nothing is published for a link or APID
+     * without packets in the window.
+     */
+    public void collectSystemParameters(long time, List<ParameterValue> list) {
+        long[] p = collect(linkHistogram.snapshotAndReset(), time, spP50, spP99, spP999, list);
+        if (p != null) {
+            lastPercentiles = p;
+        }
+        if (sps == null) {
+            return;
+        }
+        for (int apid = 0; apid < ApidSeqTracker.NUM_APIDS; apid++) {
+            ApidLatency l = apidHistograms.get(apid);
+            if (l == null) {
+                continue;
+            }
+            if (l.spP50 == null) {
+                String prefix = namespace + "/apid/" + apid + "/latency/";
+                String apidText = " for APID " + apid;
+                l.spP50 = createParameter(prefix + "p50", "50th percentile", apidText);
+                l.spP99 = createParameter(prefix + "p99", "99th percentile", apidText);
+                l.spP999 = createParameter(prefix + "p999", "99.9th percentile", apidText);
+            }
+            collect(l.histogram.snapshotAndReset(), time, l.spP50, l.spP99, l.spP999, list);
+        }
+    }
+
+    private static long[] collect(LatencyHistogram.Snapshot snapshot, long time, Parameter p50, Parameter p99,
+            Parameter p999, List<ParameterValue> list) {
+        if (snapshot.getCount() == 0) {
+            return null;
+        }
+        long[] p = { snapshot.getPercentile(0.5), snapshot.getPercentile(0.99), snapshot.getPercentile(0.999) };
+        if (p50 != null) {
+            list.add(SystemParametersService.getPV(p50, time, p[0] / 1000.0));
+            list.add(SystemParametersService.getPV(p99, time, p[1] / 1000.0));
+            list.add(SystemParametersService.getPV(p999, time, p[2] / 1000.0));
+        }
+        return p;
+    }
+
+    /**
+     * @return the percentiles of the link latency in the last window with packets, in microseconds
+     */
+    public Map<String, Object> getExtraInfo() {
+        Map<String, Object> extra = new LinkedHashMap<>();
+        long[] p = lastPercentiles;
+        if (p != null) {
+            extra.put("Latency p50 (us)", p[0] / 1000.0);
+            extra.put("Latency p99 (us)", p[1] / 1000.0);
+            extra.put("Latency p99.9 (us)", p[2] / 1000.0);
+        }
+        return extra;
+    }
+
+    static class ApidLatency {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        // Only accessed by the collecting thread
+        Parameter spP50;
+        Parameter spP99;
+        Parameter spP999;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.myproject;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds, with buckets of logarithmically increasing width.
+ * <p>
+ * Each power of two is divided in 32 buckets, so that percentiles are accurate to about 3%. Durations above 2^40 ns
+ * (about 18 minutes) are counted in the last bucket. Recording is a single atomic increment and does not lock.
+ * <p>
+ * The histogram is meant to be read periodically with {@link #snapshotAndReset()}. Each recorded value ends up in
+ * exactly one snapshot, even if it is recorded while the snapshot is taken.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int NUM_BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(nanos));
+    }
+
+    /**
+     * Returns the values recorded since the previous call, and starts a new window.
+     */
+    public Snapshot snapshotAndReset() {
+        long[] c = new long[NUM_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            if (counts.get(i) != 0) {
+                c[i] = counts.getAndSet(i, 0);
+                total += c[i];
+            }
+        }
+        return new Snapshot(c, total);
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < SUB_COUNT) {
+            return nanos < 0 ? 0 : (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return NUM_BUCKETS - 1;
+        }
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    // Middle of the range of values counted in the bucket
+    static long bucketValue(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_COUNT - 1;
+        long lower = (long) (SUB_COUNT + bucket % SUB_COUNT) << shift;
+        return lower + ((1L << shift) >> 1);
+    }
+
+    public static class Snapshot {
+        private final long[] counts;
+        private final long total;
+
+        Snapshot(long[] counts, long total) {
+            this.counts = counts;
+            this.total = total;
+        }
+
+        /**
+         * @return the number of values in this snapshot
+         */
+        public long getCount() {
+            return total;
+        }
+
+        /**
+         * @param quantile
+         *            between 0 and 1, for example 0.99 for the 99th percentile
+         * @return the value in nanoseconds below which this fraction of the values lies, or 0 if the snapshot is
+         *         empty
+         */
+        public long getPercentile(double quantile) {
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long n = 0;
+            for (int i = 0; i < counts.length; i++) {
+                n += counts[i];
+                if (n >= rank) {
+                    return bucketValue(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
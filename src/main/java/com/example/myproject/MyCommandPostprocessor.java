@@ -1,11 +1,18 @@
 package com.example.myproject;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import org.yamcs.YConfiguration;
 import org.yamcs.cmdhistory.CommandHistoryPublisher;
 import org.yamcs.commanding.PreparedCommand;
-import org.yamcs.tctm.CcsdsSeqCountFiller;
+import org.yamcs.logging.Log;
 import org.yamcs.tctm.CommandPostprocessor;
 import org.yamcs.utils.ByteArrayUtils;
+import org.yamcs.yarch.YarchDatabase;
 
 /**
  * Component capable of modifying command binary before passing it to the link for further dispatch.
@@ -18,18 +25,33 @@ import org.yamcs.utils.ByteArrayUtils;
  * ...
  * dataLinks:
  *   - name: udp-out
- *     class: org.yamcs.tctm.UdpTcDataLink
+ *     class: com.example.myproject.MyUdpTcDataLink
  *     stream: tc_realtime
  *     host: localhost
  *     port: 10025
  *     commandPostprocessorClassName: com.example.myproject.MyCommandPostprocessor
+ *     commandPostprocessorArgs:
+ *       sequenceStateFile: udp-out.seqcounts
+ *       checkpointInterval: 10
  * ...
  * </pre>
+ *
+ * With sequenceStateFile, the sequence counts continue from their last value after a restart. They are kept in a
+ * memory-mapped file, which survives a crash of Yamcs without any write on the command path. The file is additionally
+ * flushed to disk every checkpointInterval seconds, from a background thread started with the first command, to
+ * survive a crash of the machine, and when the link is stopped.
+ * <p>
+ * The counts of each APID start at 1 and wrap around after 16383, as with the CcsdsSeqCountFiller of Yamcs.
  */
 public class MyCommandPostprocessor implements CommandPostprocessor {
 
-    private CcsdsSeqCountFiller seqFiller = new CcsdsSeqCountFiller();
+    private static final Log log = new Log(MyCommandPostprocessor.class);
+
+    private ApidSeqTracker seqCounts = new ApidSeqTracker();
     private CommandHistoryPublisher commandHistory;
+    // Started with the first command, and stopped with the link; null if the counts are not persisted
+    private long checkpointInterval;
+    private volatile ScheduledExecutorService checkpointer;
 
     // Constructor used when this postprocessor is used without YAML configuration
     public MyCommandPostprocessor(String yamcsInstance) {
@@ -39,6 +61,17 @@ public class MyCommandPostprocessor implements CommandPostprocessor {
     // Constructor used when this postprocessor is used with YAML configuration
     // (commandPostprocessorClassArgs)
     public MyCommandPostprocessor(String yamcsInstance, YConfiguration config) {
+        // Keep the last sequence counts across restarts, in a file of the instance data directory
+        if (config.containsKey("sequenceStateFile")) {
+            Path file = Path.of(YarchDatabase.getInstance(yamcsInstance).getRoot(),
+                    config.getString("sequenceStateFile"));
+            try {
+                seqCounts = new ApidSeqTracker(file);
+                checkpointInterval = config.getLong("checkpointInterval", 10);
+            } catch (IOException e) {
+                log.warn("Cannot persist the sequence counts to " + file, e);
+            }
+        }
     }
 
     // Called by Yamcs during initialization
@@ -56,17 +89,49 @@ public class MyCommandPostprocessor implements CommandPostprocessor {
         // Set CCSDS packet length
         ByteArrayUtils.encodeUnsignedShort(binary.length - 7, binary, 4);
 
+        if (checkpointInterval > 0 && checkpointer == null) {
+            startCheckpointer();
+        }
+
         // Set CCSDS sequence count
-        int seqCount = seqFiller.fill(binary);
+        int seqCount = seqCounts.next(CcsdsHeader.apid(binary));
+        CcsdsHeader.setSeqCount(binary, seqCount);
 
         // Publish the sequence count to Command History. This has no special
         // meaning to Yamcs, but it shows how to store custom information specific
         // to a command.
-        commandHistory.publish(pc.getCommandId(), "ccsds-seqcount", seqCount);
-
         // Since we modified the binary, update the binary in Command History too.
-        commandHistory.publish(pc.getCommandId(), PreparedCommand.CNAME_BINARY, binary);
+        // Both are published as a single update of the command history.
+        new CommandHistoryBatch(commandHistory, pc.getCommandId())
+                .add("ccsds-seqcount", seqCount)
+                .add(PreparedCommand.CNAME_BINARY, binary)
+                .publish();
 
         return binary;
     }
+
+    private synchronized void startCheckpointer() {
+        if (checkpointer == null) {
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, getClass().getSimpleName() + "-checkpoint");
+                t.setDaemon(true);
+                return t;
+            });
+            executor.scheduleWithFixedDelay(seqCounts::force, checkpointInterval, checkpointInterval,
+                    TimeUnit.SECONDS);
+            checkpointer = executor;
+        }
+    }
+
+    /**
+     * Stops the background flushing and flushes the sequence counts a last time. Called when the link is stopped; it
+     * may be called more than once. The flushing starts again with the next command, if the link is restarted.
+     */
+    public synchronized void close() {
+        if (checkpointer != null) {
+            checkpointer.shutdown();
+            checkpointer = null;
+            seqCounts.force();
+        }
+    }
 }
@@ -1,37 +1,121 @@
 package com.example.myproject;
 
-import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
+import org.yamcs.ConfigurationException;
 import org.yamcs.TmPacket;
 import org.yamcs.YConfiguration;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersService;
+import org.yamcs.protobuf.Yamcs.Value.Type;
 import org.yamcs.tctm.AbstractPacketPreprocessor;
+import org.yamcs.tctm.TmSink;
+import org.yamcs.tctm.ccsds.error.CrcCciitCalculator;
+import org.yamcs.utils.ByteArrayUtils;
 import org.yamcs.utils.TimeEncoding;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.UnitType;
+import org.yamcs.yarch.YarchDatabase;
 
 /**
  * Component capable of modifying packet binary received from a link, before passing it further into Yamcs.
  * <p>
  * A single instance of this class is created, scoped to the link udp-in.
  * <p>
+ * After the primary header check and the APID filter, each packet goes through a list of {@link PacketStage}s. By
+ * default, all the stages that are configured are run, in the order below. The {@code stages} option selects the
+ * stages to run and their order; the {@code time} stage, which sets the generation time, is always run last if it is
+ * not listed. With {@code stageTiming}, the time spent in each stage is published as system parameters.
+ * <p>
  * This is specified in the configuration file yamcs.myproject.yaml:
  * 
  * <pre>
  * ...
  * dataLinks:
  *   - name: udp-in
- *     class: org.yamcs.tctm.UdpTmDataLink
+ *     class: com.example.myproject.MyUdpTmDataLink
  *     stream: tm_realtime
- *     host: localhost
  *     port: 10015
  *     packetPreprocessorClassName: com.example.myproject.MyPacketPreprocessor
+ *     packetPreprocessorArgs:
+ *       sequenceStateFile: udp-in.seqcounts
+ *       seqJumpReportInterval: 10
+ *       sequenceResets:
+ *         maxCount: 16       # a count restarting at most at this value
+ *         minSilence: 5000   # after this many milliseconds without packets is a reset
+ *         rebootCounter:     # or, a change of this onboard counter is a reset
+ *           offset: 12
+ *           size: 1
+ *       dropIdlePackets: true
+ *       apidFilter:
+ *         allow: [100, 101]  # or deny: [...]
+ *       duplicateWindow: 1024
+ *       errorDetection:
+ *         type: CRC-16-CCIIT
+ *       reassembleSegments: true
+ *       segmentTimeout: 10000
+ *       decompression:
+ *         algorithm: DEFLATE
+ *         apids: [200, 201]
+ *         offset: 16         # start of the compressed data in the packet
+ *         nowrap: false      # true for raw DEFLATE data, without zlib header
+ *       timeEncoding:
+ *         type: CDS  # or CUC, FIXED, FLOAT64
+ *         epoch: TAI
+ *       clockCorrelation:
+ *         window: 10000          # number of packets in the regression
+ *         minSamples: 100
+ *         downlinkDelay: 0       # milliseconds, subtracted from the reception time
+ *         maxAge: 10000          # packets this far from the estimated time (e.g. dumps) are not used nor corrected
+ *         correctGenerationTime: false
+ *       # Optional, default: all the configured stages in this order
+ *       stages: [errorDetection, duplicateFilter, continuity, segments, decompression, time]
+ *       stageTiming: false
  * ...
  * </pre>
  */
 public class MyPacketPreprocessor extends AbstractPacketPreprocessor {
 
-    private Map<Integer, AtomicInteger> seqCounts = new HashMap<>();
+    static final String ETYPE_SEQ_COUNT_RESET = "SEQ_COUNT_RESET";
+    static final String ETYPE_SEQ_COUNT_DUPLICATE = "SEQ_COUNT_DUPLICATE";
+
+    // Late packets at most this many counts behind the latest one are not reported as sequence count jumps
+    static final int LATE_PACKET_WINDOW = 64;
+
+    private ApidSeqTracker seqCounts = new ApidSeqTracker();
+    private SeqJumpReporter seqJumpReporter;
+    private SeqResetDetector seqResetDetector;
+    private PacketStatistics statistics = new PacketStatistics();
+    private ApidFilter apidFilter;
+    private DuplicateFilter duplicateFilter;
+    private SegmentReassembler segmentReassembler;
+    private PacketDecompressor decompressor;
+    private ClockDriftEstimator clockDriftEstimator;
+    // The last packet output by the reassembler. Its segments had an error control field, but it has none.
+    // The packets of a link are preprocessed one at a time, by the link thread or under the lock of the resequencer.
+    private TmPacket reassembled;
+    private long downlinkDelay;
+    private long maxAge;
+    private boolean correctGenerationTime;
+    // Before the estimate is valid: the first packet of the current run of realtime candidates, and the newest one
+    private long runOnboardTime = TimeEncoding.INVALID_INSTANT;
+    private long runGroundTime;
+    private long lastOnboardTime;
+
+    // Resolved once from the configuration; stageTimes is null if the stages are not timed
+    private final PacketStage[] stages;
+    private final String[] stageNames;
+    private final LatencyHistogram[] stageTimes;
+    private Parameter[] spStageP50;
+    private Parameter[] spStageP99;
+    private Parameter spClockOffset;
+    private Parameter spClockDrift;
 
     // Constructor used when this preprocessor is used without YAML configuration
     public MyPacketPreprocessor(String yamcsInstance) {
@@ -41,14 +125,137 @@ public class MyPacketPreprocessor extends AbstractPacketPreprocessor {
     // Constructor used when this preprocessor is used with YAML configuration
     // (packetPreprocessorClassArgs)
     public MyPacketPreprocessor(String yamcsInstance, YConfiguration config) {
-        super(yamcsInstance, config);
+        super(yamcsInstance, withoutCdsType(config));
+
+        // Onboard time decoding, used for packets that have a secondary header
+        if (isCdsTime(config)) {
+            timeDecoder = new CdsTimeDecoder(config.getConfig(CONFIG_KEY_TIME_ENCODING).getInt("daysSize", 2));
+        }
+
+        // Onboard/ground clock correlation, from the onboard times of the packets and their reception times
+        if (config.containsKey("clockCorrelation")) {
+            if (timeDecoder == null) {
+                throw new ConfigurationException("clockCorrelation requires a timeEncoding");
+            }
+            YConfiguration clockConfig = config.getConfig("clockCorrelation");
+            clockDriftEstimator = new ClockDriftEstimator(clockConfig.getInt("window", 10000),
+                    clockConfig.getLong("minSamples", 100));
+            downlinkDelay = clockConfig.getLong("downlinkDelay", 0);
+            maxAge = clockConfig.getLong("maxAge", 10000);
+            correctGenerationTime = clockConfig.getBoolean("correctGenerationTime", false);
+        }
+
+        // Keep the last sequence counts across restarts, in a file of the instance data directory
+        if (config.containsKey("sequenceStateFile")) {
+            Path file = Path.of(YarchDatabase.getInstance(yamcsInstance).getRoot(),
+                    config.getString("sequenceStateFile"));
+            try {
+                seqCounts = new ApidSeqTracker(file);
+            } catch (IOException e) {
+                log.warn("Cannot persist the sequence counts to " + file, e);
+            }
+        }
+
+        // Sequence count jumps are grouped per APID and reported once per interval (in seconds)
+        long reportInterval = config.getLong("seqJumpReportInterval", 10);
+        seqJumpReporter = new SeqJumpReporter(eventProducer, reportInterval * 1000);
+
+        // Restarts of the sequence count (e.g. onboard reboots) are not counted as lost packets
+        seqResetDetector = new SeqResetDetector(config.containsKey("sequenceResets")
+                ? config.getConfig("sequenceResets")
+                : YConfiguration.emptyConfig());
+
+        // Drop idle packets and unwanted APIDs as early as possible
+        boolean dropIdlePackets = config.getBoolean("dropIdlePackets", true);
+        if (config.containsKey("apidFilter")) {
+            YConfiguration filterConfig = config.getConfig("apidFilter");
+            List<Integer> allow = filterConfig.containsKey("allow") ? filterConfig.getList("allow") : null;
+            List<Integer> deny = filterConfig.containsKey("deny") ? filterConfig.getList("deny") : null;
+            apidFilter = new ApidFilter(allow, deny, dropIdlePackets);
+        } else if (dropIdlePackets) {
+            apidFilter = new ApidFilter(null, null, true);
+        }
+
+        // Drop packets already received within this many sequence counts (e.g. from a redundant ground station)
+        int duplicateWindow = config.getInt("duplicateWindow", 0);
+        if (duplicateWindow >= 0x2000) {
+            throw new ConfigurationException("duplicateWindow must be less than 8192");
+        } else if (duplicateWindow > 0) {
+            // A silence restarts the window, as it does for the detection of sequence count resets
+            duplicateFilter = new DuplicateFilter(duplicateWindow, seqResetDetector.getMinSilence());
+        }
+
+        // Same CRC as the Yamcs CRC-16-CCIIT calculator set up from errorDetection, but faster
+        if (errorDetectionCalculator instanceof CrcCciitCalculator) {
+            int initialValue = 0xFFFF;
+            if (config.get(CONFIG_KEY_ERROR_DETECTION) instanceof Map) {
+                initialValue = config.getConfig(CONFIG_KEY_ERROR_DETECTION).getInt("initialValue", 0xFFFF);
+            }
+            errorDetectionCalculator = new Crc16CcittCalculator(initialValue);
+        }
+
+        // Reassemble segmented packets, dropping the groups not completed within the timeout (in milliseconds)
+        if (config.getBoolean("reassembleSegments", false)) {
+            int trailerLength = (errorDetectionCalculator != null) ? errorDetectionCalculator.sizeInBits() / 8 : 0;
+            segmentReassembler = new SegmentReassembler(config.getLong("segmentTimeout", 10000), trailerLength,
+                    eventProducer);
+        }
+
+        // Inflate the user data of compressed APIDs, after reassembly since compression is applied to whole packets
+        if (config.containsKey("decompression")) {
+            decompressor = new PacketDecompressor(config.getConfig("decompression"), errorDetectionCalculator);
+        }
+
+        // The stages that can be run, given the options above, in their default order
+        Map<String, PacketStage> available = new LinkedHashMap<>();
+        if (errorDetectionCalculator != null) {
+            available.put("errorDetection", this::checkErrorDetection);
+        }
+        if (duplicateFilter != null) {
+            available.put("duplicateFilter", this::filterDuplicates);
+        }
+        available.put("continuity", this::checkContinuity);
+        if (segmentReassembler != null) {
+            available.put("segments", this::reassembleSegments);
+        }
+        if (decompressor != null) {
+            available.put("decompression", this::decompress);
+        }
+        available.put("time", this::setGenerationTime);
+
+        List<String> names = new ArrayList<>(available.keySet());
+        if (config.containsKey("stages")) {
+            names = new ArrayList<>(config.<String> getList("stages"));
+            for (String name : names) {
+                if (!available.containsKey(name)) {
+                    throw new ConfigurationException("Stage '" + name + "' is unknown or not configured. Available: "
+                            + available.keySet());
+                }
+            }
+            if (!names.contains("time")) {
+                names.add("time");
+            }
+        }
+        stageNames = names.toArray(new String[0]);
+        stages = new PacketStage[stageNames.length];
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = available.get(stageNames[i]);
+        }
+        if (config.getBoolean("stageTiming", false)) {
+            stageTimes = new LatencyHistogram[stages.length];
+            for (int i = 0; i < stages.length; i++) {
+                stageTimes[i] = new LatencyHistogram();
+            }
+        } else {
+            stageTimes = null;
+        }
     }
 
     @Override
     public TmPacket process(TmPacket packet) {
 
         byte[] bytes = packet.getPacket();
-        if (bytes.length < 6) { // Expect at least the length of CCSDS primary header
+        if (bytes.length < CcsdsHeader.PRIMARY_HEADER_LENGTH) { // Expect at least the length of CCSDS primary header
             eventProducer.sendWarning("SHORT_PACKET",
                     "Short packet received, length: " + bytes.length + "; minimum required length is 6 bytes.");
 
@@ -56,21 +263,88 @@ public class MyPacketPreprocessor extends AbstractPacketPreprocessor {
             return null;
         }
 
-        // Verify continuity for a given APID based on the CCSDS sequence counter
-        int apidseqcount = ByteBuffer.wrap(bytes).getInt(0);
-        int apid = (apidseqcount >> 16) & 0x07FF;
-        int seq = (apidseqcount) & 0x3FFF;
-        AtomicInteger ai = seqCounts.computeIfAbsent(apid, k -> new AtomicInteger());
-        int oldseq = ai.getAndSet(seq);
+        int apidseqcount = CcsdsHeader.apidSeqCount(bytes);
+        int apid = CcsdsHeader.apid(apidseqcount);
+        if (apidFilter != null && !apidFilter.accepts(apid)) {
+            statistics.filtered();
+            return null;
+        }
+        statistics.received(apid);
+
+        TmPacket pkt = preprocess(packet, apidseqcount);
+        seqJumpReporter.tick(packet.getReceptionTime());
+        return pkt;
+    }
+
+    /**
+     * Splits a datagram containing several CCSDS packets, and preprocesses all of them in one pass.
+     * <p>
+     * Each packet is copied once, directly from the datagram into its own array. Packet counters are updated once per
+     * run of packets with the same APID, and the sequence count jump window is checked once per datagram.
+     *
+     * @param sink
+     *            receives the packets that are not dropped
+     */
+    public void processBatch(TmPacket datagram, TmSink sink) {
+        byte[] bytes = datagram.getPacket();
+        int offset = 0;
+        int length;
+        int runApid = -1;
+        int runCount = 0;
 
-        if (((seq - oldseq) & 0x3FFF) != 1) {
-            eventProducer.sendWarning("SEQ_COUNT_JUMP",
-                    "Sequence count jump for APID: " + apid + " old seq: " + oldseq + " newseq: " + seq);
+        while ((length = DatagramSplitter.packetLength(bytes, offset)) > 0) {
+            int apidseqcount = CcsdsHeader.apidSeqCount(bytes, offset);
+            int apid = CcsdsHeader.apid(apidseqcount);
+            if (apidFilter != null && !apidFilter.accepts(apid)) {
+                statistics.filtered();
+                offset += length;
+                continue;
+            }
+            if (apid != runApid) {
+                if (runCount > 0) {
+                    statistics.received(runApid, runCount);
+                }
+                runApid = apid;
+                runCount = 0;
+            }
+            runCount++;
+
+            TmPacket pkt = preprocess(DatagramSplitter.slice(datagram, offset, length), apidseqcount);
+            if (pkt != null) {
+                sink.processPacket(pkt);
+            }
+            offset += length;
+        }
+        if (runCount > 0) {
+            statistics.received(runApid, runCount);
+        }
+        seqJumpReporter.tick(datagram.getReceptionTime());
+
+        if (offset < bytes.length) {
+            eventProducer.sendWarning("SHORT_PACKET", "Datagram of " + bytes.length + " bytes has "
+                    + (bytes.length - offset) + " trailing bytes that do not form a complete packet");
         }
+    }
 
-        // Our custom packets don't include a secundary header with time information.
-        // Use Yamcs-local time instead.
-        packet.setGenerationTime(TimeEncoding.getWallclockTime());
+    // Everything after the primary header check and the packet counting
+    private TmPacket preprocess(TmPacket packet, int apidseqcount) {
+        for (int i = 0; i < stages.length; i++) {
+            TmPacket pkt;
+            if (stageTimes == null) {
+                pkt = stages[i].process(packet, apidseqcount);
+            } else {
+                long t0 = System.nanoTime();
+                pkt = stages[i].process(packet, apidseqcount);
+                stageTimes[i].record(System.nanoTime() - t0);
+            }
+            if (pkt == null || pkt.isInvalid()) {
+                return pkt;
+            }
+            if (pkt != packet) {
+                packet = pkt;
+                apidseqcount = CcsdsHeader.apidSeqCount(packet.getPacket());
+            }
+        }
 
         // Use the full 32-bits, so that both APID and the count are included.
         // Yamcs uses this attribute to uniquely identify the packet (together with the gentime)
@@ -78,4 +352,231 @@ public class MyPacketPreprocessor extends AbstractPacketPreprocessor {
 
         return packet;
     }
+
+    // Verify the packet error control field in the last two bytes (errorDetection).
+    // Invalid packets are dropped, or diverted to another stream, by the link (invalidPackets).
+    private TmPacket checkErrorDetection(TmPacket packet, int apidseqcount) {
+        if (!hasValidCrc(packet.getPacket())) {
+            int apid = CcsdsHeader.apid(apidseqcount);
+            statistics.corrupted(apid);
+            eventProducer.sendWarning(ETYPE_CORRUPTED_PACKET, "Corrupted packet for APID: " + apid);
+            packet.setGenerationTime(TimeEncoding.getWallclockTime());
+            packet.setInvalid();
+        }
+        return packet;
+    }
+
+    private TmPacket filterDuplicates(TmPacket packet, int apidseqcount) {
+        int apid = CcsdsHeader.apid(apidseqcount);
+        if (seqResetDetector.rebootCounterChanged(apid, packet.getPacket())) {
+            // The counts seen before the reboot say nothing about the new ones
+            duplicateFilter.reset(apid);
+        }
+        if (duplicateFilter.isDuplicate(apid, CcsdsHeader.seqCount(apidseqcount), packet.getReceptionTime())) {
+            statistics.suppressed(apid);
+            return null;
+        }
+        return packet;
+    }
+
+    // Verify continuity for a given APID based on the CCSDS sequence counter
+    private TmPacket checkContinuity(TmPacket packet, int apidseqcount) {
+        int apid = CcsdsHeader.apid(apidseqcount);
+        int seq = CcsdsHeader.seqCount(apidseqcount);
+
+        int oldseq = seqCounts.update(apid, seq);
+        int delta = (seq - oldseq) & 0x3FFF;
+        boolean reset = seqResetDetector.update(apid, seq, packet.getPacket(), packet.getReceptionTime(),
+                oldseq == ApidSeqTracker.UNSEEN || delta == 1);
+        if (oldseq == ApidSeqTracker.UNSEEN) {
+            return packet;
+        }
+        if (reset) {
+            statistics.reset(apid);
+            eventProducer.sendWarning(ETYPE_SEQ_COUNT_RESET, "Sequence count reset for APID: " + apid
+                    + " old seq: " + oldseq + " newseq: " + seq);
+        } else if (delta == 0) {
+            statistics.duplicated(apid);
+            // Identical messages are merged by the event producer
+            eventProducer.sendWarning(ETYPE_SEQ_COUNT_DUPLICATE, "Duplicate sequence count for APID: " + apid);
+        } else if (delta != 1) {
+            if (delta < 0x2000) {
+                statistics.lost(apid, delta - 1);
+            } else {
+                // More than half the counter range ahead: most likely a late packet. Keep the newest count, so that
+                // the next packet in order does not look like a jump.
+                statistics.outOfOrder(apid);
+                seqCounts.update(apid, oldseq);
+                if (0x4000 - delta <= LATE_PACKET_WINDOW) {
+                    // Slightly late: not worth an event
+                    return packet;
+                }
+            }
+            seqJumpReporter.jump(apid, oldseq, seq, packet.getReceptionTime());
+        }
+        return packet;
+    }
+
+    // Segments are held back until their group is complete, then continue as a single packet
+    private TmPacket reassembleSegments(TmPacket packet, int apidseqcount) {
+        TmPacket pkt = segmentReassembler.process(packet, apidseqcount);
+        if (pkt != packet) {
+            reassembled = pkt;
+        }
+        return pkt;
+    }
+
+    private TmPacket decompress(TmPacket packet, int apidseqcount) {
+        int apid = CcsdsHeader.apid(apidseqcount);
+        if (!decompressor.isCompressed(apid)) {
+            return packet;
+        }
+        TmPacket pkt = decompressor.decompress(packet, errorDetectionCalculator != null && packet != reassembled);
+        if (pkt == null) {
+            eventProducer.sendWarning(PacketDecompressor.EVENT_TYPE, "Cannot decompress packet for APID: " + apid);
+            packet.setGenerationTime(TimeEncoding.getWallclockTime());
+            packet.setInvalid();
+            return packet;
+        }
+        return pkt;
+    }
+
+    // If the packet has a secondary header (CCSDS_Sec_Hdr_Flag) and a time encoding is configured, the
+    // generation time is the onboard time at the start of the secondary header.
+    // Otherwise, use Yamcs-local time instead.
+    private TmPacket setGenerationTime(TmPacket packet, int apidseqcount) {
+        if (timeDecoder != null && CcsdsHeader.hasSecondaryHeader(apidseqcount)) {
+            setRealtimePacketTime(packet, 6);
+            long onboardTime = packet.getGenerationTime();
+            long groundTime = packet.getReceptionTime() - downlinkDelay;
+            // Only realtime packets are correlated. Dumped or replayed packets were generated long before their
+            // reception, and keep their onboard time.
+            if (clockDriftEstimator != null && isRealtime(onboardTime, groundTime)) {
+                clockDriftEstimator.add(onboardTime, groundTime);
+                if (correctGenerationTime && clockDriftEstimator.isValid()) {
+                    packet.setGenerationTime(clockDriftEstimator.correct(onboardTime));
+                }
+            }
+        } else {
+            packet.setGenerationTime(TimeEncoding.getWallclockTime());
+        }
+        return packet;
+    }
+
+    // Once the offset between the clocks is known, a realtime packet is received within maxAge of its corrected
+    // onboard time. Until then the offset is unknown, and can be larger than maxAge: realtime packets are the newest
+    // ones, and both clocks advance by the same time between them. A run of such packets, within maxAge, is used once
+    // it spans 2 * maxAge of onboard time; a dump downlinked at more than twice its generation rate breaks its run
+    // before that.
+    private boolean isRealtime(long onboardTime, long groundTime) {
+        if (clockDriftEstimator.isValid()) {
+            return Math.abs(groundTime - clockDriftEstimator.correct(onboardTime)) < maxAge;
+        }
+        if (runOnboardTime != TimeEncoding.INVALID_INSTANT && onboardTime <= lastOnboardTime) {
+            return false;
+        }
+        lastOnboardTime = onboardTime;
+        if (runOnboardTime == TimeEncoding.INVALID_INSTANT
+                || Math.abs((groundTime - runGroundTime) - (onboardTime - runOnboardTime)) >= maxAge) {
+            runOnboardTime = onboardTime;
+            runGroundTime = groundTime;
+            return false;
+        }
+        return onboardTime - runOnboardTime >= 2 * maxAge;
+    }
+
+    private boolean hasValidCrc(byte[] bytes) {
+        int n = bytes.length - 2;
+        if (n < 6) {
+            return false;
+        }
+        return errorDetectionCalculator.compute(bytes, 0, n) == ByteArrayUtils.decodeUnsignedShort(bytes, n);
+    }
+
+    public PacketStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Called by the link once the system parameters service is available.
+     *
+     * @param namespace
+     *            prefix of the parameter names, relative to the system parameters namespace
+     */
+    public void setupSystemParameters(SystemParametersService sps, String namespace) {
+        statistics.setupSystemParameters(sps, namespace);
+        if (decompressor != null) {
+            decompressor.setupSystemParameters(sps, namespace);
+        }
+        if (clockDriftEstimator != null) {
+            spClockOffset = sps.createSystemParameter(namespace + "/clock/offset", Type.DOUBLE, new UnitType("ms"),
+                    "Estimated ground time minus onboard time");
+            spClockDrift = sps.createSystemParameter(namespace + "/clock/drift", Type.DOUBLE, new UnitType("ppm"),
+                    "Estimated drift of the onboard clock, positive when it runs slow");
+        }
+        if (stageTimes != null) {
+            spStageP50 = new Parameter[stages.length];
+            spStageP99 = new Parameter[stages.length];
+            UnitType unit = new UnitType("us");
+            for (int i = 0; i < stages.length; i++) {
+                String prefix = namespace + "/stages/" + stageNames[i] + "/";
+                spStageP50[i] = sps.createSystemParameter(prefix + "p50", Type.DOUBLE, unit,
+                        "50th percentile of the time spent in the " + stageNames[i] + " stage");
+                spStageP99[i] = sps.createSystemParameter(prefix + "p99", Type.DOUBLE, unit,
+                        "99th percentile of the time spent in the " + stageNames[i] + " stage");
+            }
+        }
+    }
+
+    /**
+     * Sends the summaries of the sequence count jumps whose reporting window has expired. Called periodically by
+     * {@link MyUdpTmDataLink}, so that the summaries are not held back until the next packet.
+     */
+    public void tick(long now) {
+        seqJumpReporter.tick(now);
+    }
+
+    /**
+     * Adds the packet statistics, the decompression metrics, the clock correlation, and the stage times since the
+     * previous collection, to {@code list}.
+     */
+    public void collectSystemParameters(long time, List<ParameterValue> list) {
+        statistics.collectSystemParameters(time, list);
+        if (decompressor != null) {
+            decompressor.collectSystemParameters(time, list);
+        }
+        if (spClockOffset != null && clockDriftEstimator.isValid()) {
+            list.add(SystemParametersService.getPV(spClockOffset, time, clockDriftEstimator.getCurrentOffset()));
+            list.add(SystemParametersService.getPV(spClockDrift, time, clockDriftEstimator.getDrift() * 1e6));
+        }
+        if (spStageP50 != null) {
+            for (int i = 0; i < stages.length; i++) {
+                LatencyHistogram.Snapshot snapshot = stageTimes[i].snapshotAndReset();
+                if (snapshot.getCount() > 0) {
+                    list.add(SystemParametersService.getPV(spStageP50[i], time,
+                            snapshot.getPercentile(0.5) / 1000.0));
+                    list.add(SystemParametersService.getPV(spStageP99[i], time,
+                            snapshot.getPercentile(0.99) / 1000.0));
+                }
+            }
+        }
+    }
+
+    private static boolean isCdsTime(YConfiguration config) {
+        return config.containsKey(CONFIG_KEY_TIME_ENCODING)
+                && "CDS".equals(config.getConfig(CONFIG_KEY_TIME_ENCODING).getString("type", null));
+    }
+
+    // AbstractPacketPreprocessor does not know about CDS, so it gets the time encoding without the type
+    // (and sets up the epoch from it). The CDS decoder is then set by our constructor.
+    private static YConfiguration withoutCdsType(YConfiguration config) {
+        if (!isCdsTime(config)) {
+            return config;
+        }
+        Map<String, Object> timeEncoding = new HashMap<>(config.getMap(CONFIG_KEY_TIME_ENCODING));
+        timeEncoding.remove("type");
+        Map<String, Object> root = new HashMap<>(config.getRoot());
+        root.put(CONFIG_KEY_TIME_ENCODING, timeEncoding);
+        return YConfiguration.wrap(root);
+    }
 }
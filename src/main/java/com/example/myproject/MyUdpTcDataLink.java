@@ -0,0 +1,241 @@
+package com.example.myproject;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.yamcs.Spec;
+import org.yamcs.Spec.OptionType;
+import org.yamcs.YConfiguration;
+import org.yamcs.cmdhistory.CommandHistoryPublisher;
+import org.yamcs.cmdhistory.CommandHistoryPublisher.AckStatus;
+import org.yamcs.commanding.PreparedCommand;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersService;
+import org.yamcs.protobuf.Commanding.CommandId;
+import org.yamcs.tctm.UdpTcDataLink;
+
+/**
+ * UDP command link that extends the standard Yamcs {@link UdpTcDataLink} with a {@link TcDispatchQueue}: the commands
+ * are sent by priority class, and each class can be paced so that a burst of routine commands does not overrun the TC
+ * buffer of the spacecraft nor delay urgent commands.
+ * <p>
+ * This is specified in the configuration file yamcs.myproject.yaml:
+ *
+ * <pre>
+ * ...
+ * dataLinks:
+ *   - name: udp-out
+ *     class: com.example.myproject.MyUdpTcDataLink
+ *     stream: tc_realtime
+ *     host: localhost
+ *     port: 10025
+ *     # Optional, send the commands by priority class
+ *     dispatch:
+ *       classes:
+ *         - name: urgent
+ *           commands: [/myproject/Reboot]
+ *         - name: routine
+ *           rate: 1000
+ *           burst: 100
+ *     # Optional, send several commands per datagram
+ *     packing:
+ *       mtu: 1472
+ *       flushDelay: 10
+ * ...
+ * </pre>
+ *
+ * The classes are listed by decreasing priority. A class without rate is not paced. The tcMaxRate option of the link,
+ * if set, still limits the total rate.
+ * <p>
+ * With packing, the commands are sent in datagrams of at most mtu bytes, see {@link TcDatagramPacker}. A command waits
+ * at most flushDelay milliseconds for other commands to share its datagram. Each command is acknowledged as sent when
+ * its datagram is sent, with the number of the datagram in the udp-datagram attribute of the command history.
+ */
+public class MyUdpTcDataLink extends UdpTcDataLink {
+
+    private TcDispatchQueue dispatchQueue;
+    private TcDatagramPacker packer;
+    private long idleHousekeepingInterval;
+    private InetAddress destination;
+
+    @Override
+    public Spec getSpec() {
+        Spec classSpec = new Spec();
+        classSpec.addOption("name", OptionType.STRING).withRequired(true);
+        classSpec.addOption("commands", OptionType.LIST).withElementType(OptionType.STRING)
+                .withDescription("Qualified names of the commands of this class. Exactly one class has no commands, "
+                        + "it receives all the other commands.");
+        classSpec.addOption("rate", OptionType.FLOAT)
+                .withDescription("Maximum number of commands of this class sent per second. Not paced if absent.");
+        classSpec.addOption("burst", OptionType.INTEGER).withDefault(1)
+                .withDescription("Number of commands of this class that may be sent at once after an idle period.");
+
+        Spec dispatchSpec = new Spec();
+        dispatchSpec.addOption("classes", OptionType.LIST).withElementType(OptionType.MAP).withSpec(classSpec)
+                .withRequired(true).withDescription("Priority classes, by decreasing priority.");
+
+        Spec packingSpec = new Spec();
+        packingSpec.addOption("mtu", OptionType.INTEGER).withDefault(1472)
+                .withDescription("Maximum size of a datagram, in bytes");
+        packingSpec.addOption("flushDelay", OptionType.INTEGER).withDefault(10)
+                .withDescription("Maximum time a command waits for other commands to share its datagram, in ms");
+
+        Spec spec = super.getSpec();
+        spec.addOption("dispatch", OptionType.MAP).withSpec(dispatchSpec)
+                .withDescription("If present, the commands are sent by priority class, with a rate per class.");
+        spec.addOption("packing", OptionType.MAP).withSpec(packingSpec)
+                .withDescription("If present, several commands are sent per datagram.");
+        return spec;
+    }
+
+    @Override
+    public void init(String yamcsInstance, String linkName, YConfiguration config) {
+        super.init(yamcsInstance, linkName, config);
+
+        // The link thread takes the commands from commandQueue; the dispatch queue decides which one comes next
+        if (config.containsKey("dispatch")) {
+            dispatchQueue = new TcDispatchQueue(config.getConfig("dispatch"),
+                    config.getInt("tcQueueSize", Integer.MAX_VALUE));
+            commandQueue = dispatchQueue;
+        }
+        if (config.containsKey("packing")) {
+            packer = new TcDatagramPacker(config.getConfig("packing"));
+            idleHousekeepingInterval = housekeepingInterval;
+        }
+    }
+
+    @Override
+    protected void startUp() throws SocketException, UnknownHostException {
+        super.startUp();
+        destination = InetAddress.getByName(host);
+    }
+
+    @Override
+    public void uplinkCommand(PreparedCommand pc) throws IOException {
+        if (packer == null) {
+            super.uplinkCommand(pc);
+            return;
+        }
+        byte[] binary = postprocess(pc);
+        if (binary == null) {
+            return;
+        }
+        synchronized (packer) {
+            if (!packer.fits(binary)) {
+                flush();
+            }
+            if (packer.fits(binary)) {
+                packer.add(pc.getCommandId(), binary);
+            } else {
+                // Larger than the mtu, send it on its own
+                send(binary, binary.length, List.of(pc.getCommandId()));
+            }
+        }
+    }
+
+    // Called by the link thread before it waits for the next command
+    @Override
+    protected void doHousekeeping() {
+        super.doHousekeeping();
+        if (packer != null) {
+            synchronized (packer) {
+                long now = System.nanoTime();
+                if (packer.isDue(now)) {
+                    flush();
+                }
+                // Wake up in time to send the datagram being filled
+                housekeepingInterval = packer.isEmpty() ? idleHousekeepingInterval
+                        : Math.max(1, packer.millisToDeadline(now));
+            }
+        }
+    }
+
+    private void flush() {
+        if (!packer.isEmpty()) {
+            send(packer.getBuffer(), packer.getLength(), packer.getCommands());
+            packer.clear();
+        }
+    }
+
+    private void send(byte[] data, int length, List<CommandId> commands) {
+        try {
+            socket.send(new DatagramPacket(data, length, destination, port));
+        } catch (IOException e) {
+            log.warn("Cannot send datagram of {} commands: {}", commands.size(), e.toString());
+            for (CommandId cmdId : commands) {
+                failedCommand(cmdId, "Cannot send datagram: " + e.getMessage());
+            }
+            return;
+        }
+        dataOut(commands.size(), length);
+        int datagram = packer.countDatagram(commands.size());
+        long time = getCurrentTime();
+        for (CommandId cmdId : commands) {
+            new CommandHistoryBatch(commandHistoryPublisher, cmdId)
+                    .addAck(CommandHistoryPublisher.AcknowledgeSent_KEY, time, AckStatus.OK)
+                    .add("udp-datagram", datagram)
+                    .publish();
+        }
+    }
+
+    @Override
+    public void shutDown() {
+        // Do not lose the commands of the datagram being filled. This is also called by the thread stopping the link,
+        // hence the lock on the packer.
+        if (packer != null && socket != null) {
+            synchronized (packer) {
+                flush();
+            }
+        }
+        // Last flush of the sequence counts. The link thread calls this again when it ends, after its last command.
+        if (cmdPostProcessor instanceof MyCommandPostprocessor) {
+            ((MyCommandPostprocessor) cmdPostProcessor).close();
+        }
+        super.shutDown();
+    }
+
+    // Called by Yamcs once the SystemParametersService is available
+    @Override
+    public void setupSystemParameters(SystemParametersService sps) {
+        super.setupSystemParameters(sps);
+        if (dispatchQueue != null) {
+            dispatchQueue.setupSystemParameters(sps, LINK_NAMESPACE + linkName);
+        }
+        if (packer != null) {
+            packer.setupSystemParameters(sps, LINK_NAMESPACE + linkName);
+        }
+    }
+
+    // Called by Yamcs at regular intervals to collect the values of the system parameters
+    @Override
+    protected void collectSystemParameters(long time, List<ParameterValue> list) {
+        super.collectSystemParameters(time, list);
+        if (dispatchQueue != null) {
+            dispatchQueue.collectSystemParameters(time, list);
+        }
+        if (packer != null) {
+            packer.collectSystemParameters(time, list);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getExtraInfo() {
+        Map<String, Object> extra = super.getExtraInfo();
+        if (dispatchQueue == null) {
+            return extra;
+        }
+        // UdpTcDataLink has no extra information of its own
+        Map<String, Object> all = new LinkedHashMap<>();
+        if (extra != null) {
+            all.putAll(extra);
+        }
+        all.putAll(dispatchQueue.getExtraInfo());
+        return all;
+    }
+}
@@ -0,0 +1,346 @@
+package com.example.myproject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.yamcs.ConfigurationException;
+import org.yamcs.Spec;
+import org.yamcs.Spec.OptionType;
+import org.yamcs.TmPacket;
+import org.yamcs.YConfiguration;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersService;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.tctm.PacketPreprocessor;
+import org.yamcs.tctm.TmSink;
+import org.yamcs.tctm.UdpTmDataLink;
+import org.yamcs.xtce.Parameter;
+
+/**
+ * UDP telemetry link that extends the standard Yamcs {@link UdpTmDataLink} with the packet statistics gathered by
+ * {@link MyPacketPreprocessor}. Optionally, datagrams may contain several packets, and packets can be put back in
+ * sequence count order before they are preprocessed. Ranges of APIDs can also be sent to other TM streams, each of
+ * which may be connected to its own processor, so that the packets are decoded in parallel. High-rate APIDs can be
+ * decimated, so that only some of their packets reach the realtime processor. The time taken to preprocess the
+ * received packets is measured, and its percentiles are published as system parameters.
+ * <p>
+ * This is specified in the configuration file yamcs.myproject.yaml:
+ *
+ * <pre>
+ * ...
+ * dataLinks:
+ *   - name: udp-in
+ *     class: com.example.myproject.MyUdpTmDataLink
+ *     stream: tm_realtime
+ *     port: 10015
+ *     packetPreprocessorClassName: com.example.myproject.MyPacketPreprocessor
+ *     # Optional, split each datagram into the CCSDS packets it contains
+ *     multiPacketDatagrams: true
+ *     # Optional, resequence packets per APID
+ *     reorder:
+ *       windowSize: 16
+ *       maxDelay: 200
+ *     # Optional, packets of these APIDs go to other streams than tm_realtime
+ *     apidStreams:
+ *       - stream: tm_realtime_payload
+ *         apids: ["200-299", 310]
+ *     # Optional, the other packets of these APIDs go to tm_dump, which is archived but not processed
+ *     decimation:
+ *       stream: tm_dump
+ *       apids:
+ *         - apid: 100
+ *           keepOneIn: 50
+ *         - apid: 101
+ *           interval: 1000
+ * ...
+ * </pre>
+ *
+ * The additional streams have to be declared in the streamConfig section, with the processor they feed.
+ */
+public class MyUdpTmDataLink extends UdpTmDataLink {
+
+    // Used in place of the configured preprocessor, when we run it ourselves
+    private static final PacketPreprocessor NO_PREPROCESSING = new PacketPreprocessor() {
+        @Override
+        public TmPacket process(TmPacket packet) {
+            return packet;
+        }
+    };
+
+    private MyPacketPreprocessor myPreprocessor;
+
+    private boolean multiPacketDatagrams;
+    private PacketPreprocessor preprocessor;
+    private PacketResequencer resequencer;
+    private long reorderCheckInterval;
+    private ScheduledExecutorService timer;
+    private TmStreamRouter router;
+    private PacketDecimator decimator;
+    private IngestLatency latency;
+
+    private Parameter spReorderedCount;
+    private Parameter spGivenUpCount;
+    private Parameter spDecimatedCount;
+
+    @Override
+    public Spec getSpec() {
+        Spec reorderSpec = new Spec();
+        reorderSpec.addOption("windowSize", OptionType.INTEGER).withDefault(16)
+                .withDescription("Maximum number of packets held per APID. Must be a power of two.");
+        reorderSpec.addOption("maxDelay", OptionType.INTEGER).withDefault(200)
+                .withDescription("Maximum time in milliseconds a packet is held waiting for missing packets.");
+
+        Spec apidStreamSpec = new Spec();
+        apidStreamSpec.addOption("stream", OptionType.STRING).withRequired(true)
+                .withDescription("Name of the TM stream.");
+        apidStreamSpec.addOption("apids", OptionType.LIST).withElementType(OptionType.ANY).withRequired(true)
+                .withDescription("APIDs sent to this stream, as numbers or ranges such as \"100-199\".");
+
+        Spec decimatedApidSpec = new Spec();
+        decimatedApidSpec.addOption("apid", OptionType.INTEGER).withRequired(true);
+        decimatedApidSpec.addOption("keepOneIn", OptionType.INTEGER)
+                .withDescription("Keep the packets whose sequence count is a multiple of this number.");
+        decimatedApidSpec.addOption("interval", OptionType.INTEGER)
+                .withDescription("Keep at most one packet per interval of generation time, in milliseconds.");
+
+        Spec decimationSpec = new Spec();
+        decimationSpec.addOption("stream", OptionType.STRING).withDefault("tm_dump")
+                .withDescription("Stream receiving the packets that are not kept. It should not feed a processor.");
+        decimationSpec.addOption("apids", OptionType.LIST).withElementType(OptionType.MAP)
+                .withSpec(decimatedApidSpec).withRequired(true);
+
+        Spec spec = super.getSpec();
+        spec.addOption("multiPacketDatagrams", OptionType.BOOLEAN).withDefault(false)
+                .withDescription("If true, each datagram is split into the CCSDS packets it contains.");
+        spec.addOption("reorder", OptionType.MAP).withSpec(reorderSpec)
+                .withDescription("If present, packets are put back in sequence count order before preprocessing.");
+        spec.addOption("apidStreams", OptionType.LIST).withElementType(OptionType.MAP).withSpec(apidStreamSpec)
+                .withDescription("Streams to which the packets of some APIDs are sent instead of the link stream.");
+        spec.addOption("decimation", OptionType.MAP).withSpec(decimationSpec)
+                .withDescription("If present, only some of the packets of the given APIDs go to the link stream.");
+        spec.addOption("measureLatency", OptionType.BOOLEAN).withDefault(true)
+                .withDescription("If true, the time between reception and end of preprocessing is measured.");
+        spec.addOption("apidStreamQueueSize", OptionType.INTEGER).withDefault(1024)
+                .withDescription("Number of packets that may wait to be emitted on each of the apidStreams.");
+        return spec;
+    }
+
+    @Override
+    public void init(String yamcsInstance, String linkName, YConfiguration config) {
+        super.init(yamcsInstance, linkName, config);
+
+        multiPacketDatagrams = config.getBoolean("multiPacketDatagrams", false);
+        if (config.containsKey("reorder")) {
+            YConfiguration reorderConfig = config.getConfig("reorder");
+            int windowSize = reorderConfig.getInt("windowSize", 16);
+            if (windowSize <= 0 || windowSize > 0x2000 || Integer.bitCount(windowSize) != 1) {
+                throw new ConfigurationException("reorder windowSize must be a power of two, at most 8192");
+            }
+            long maxDelay = reorderConfig.getLong("maxDelay", 200);
+            reorderCheckInterval = Math.max(1, maxDelay / 4);
+            resequencer = new PacketResequencer(windowSize, maxDelay, this::preprocessAndForward);
+        }
+        if (config.containsKey("apidStreams")) {
+            router = new TmStreamRouter(yamcsInstance, linkName, config.getConfigList("apidStreams"),
+                    config.getInt("apidStreamQueueSize", 1024));
+        }
+        if (config.containsKey("decimation")) {
+            decimator = new PacketDecimator(yamcsInstance, linkName, config.getConfig("decimation"));
+        }
+        if (config.getBoolean("measureLatency", true)) {
+            latency = new IngestLatency();
+        }
+
+        // The preprocessor is run on the individual, resequenced, packets. UdpTmDataLink runs it before processPacket,
+        // so we also run it ourselves when measuring the latency, to include the preprocessing.
+        if (multiPacketDatagrams || resequencer != null || latency != null) {
+            preprocessor = packetPreprocessor;
+            packetPreprocessor = NO_PREPROCESSING;
+        }
+    }
+
+    // The sink is set by Yamcs to emit packets on the link stream; the latency measurement, the decimator and the
+    // router sit in front of it
+    @Override
+    public void setTmSink(TmSink tmSink) {
+        TmSink sink = tmSink;
+        if (router != null) {
+            router.setDefaultSink(sink);
+            sink = router;
+        }
+        if (decimator != null) {
+            decimator.setNext(sink);
+            sink = decimator;
+        }
+        if (latency != null) {
+            latency.setNext(sink);
+            sink = latency;
+        }
+        super.setTmSink(sink);
+    }
+
+    @Override
+    public void doStart() {
+        if (router != null) {
+            router.start();
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, getClass().getSimpleName() + "-timer-" + linkName);
+            t.setDaemon(true);
+            return t;
+        });
+        if (resequencer != null) {
+            timer.scheduleAtFixedRate(() -> resequencer.expire(timeService.getMissionTime()),
+                    reorderCheckInterval, reorderCheckInterval, TimeUnit.MILLISECONDS);
+        }
+        // Time based work of the preprocessor, which would otherwise wait for the next packet
+        if (getPreprocessor() instanceof MyPacketPreprocessor) {
+            MyPacketPreprocessor pp = (MyPacketPreprocessor) getPreprocessor();
+            timer.scheduleAtFixedRate(() -> pp.tick(timeService.getMissionTime()), 1, 1, TimeUnit.SECONDS);
+        }
+        super.doStart();
+    }
+
+    @Override
+    public void doStop() {
+        if (timer != null) {
+            timer.shutdown();
+            timer = null;
+        }
+        super.doStop();
+        // The socket is closed: release the packets still waiting for missing ones, before the router is drained
+        if (resequencer != null) {
+            resequencer.flush();
+        }
+        if (router != null) {
+            router.stop();
+        }
+    }
+
+    // Called by the link thread to read the next datagram. The socket is private to UdpTmDataLink, so the latency is
+    // measured from the return of this method, which is just after the socket read and the copy of the datagram.
+    @Override
+    public TmPacket getNextPacket() {
+        TmPacket packet = super.getNextPacket();
+        if (packet != null && latency != null) {
+            latency.datagramReceived();
+        }
+        return packet;
+    }
+
+    // Called by the link thread for each packet returned by getNextPacket()
+    @Override
+    protected void processPacket(TmPacket packet) {
+        if (multiPacketDatagrams) {
+            processDatagram(packet);
+        } else if (resequencer != null) {
+            resequencer.offer(packet, packet.getReceptionTime());
+        } else if (preprocessor != null) {
+            preprocessAndForward(packet);
+        } else {
+            super.processPacket(packet);
+        }
+    }
+
+    private void processDatagram(TmPacket datagram) {
+        if (resequencer != null) {
+            int trailing = DatagramSplitter.split(datagram, p -> resequencer.offer(p, p.getReceptionTime()));
+            if (trailing > 0) {
+                log.warn("Ignoring {} trailing bytes of datagram that do not form a complete packet", trailing);
+            }
+        } else if (preprocessor instanceof MyPacketPreprocessor) {
+            ((MyPacketPreprocessor) preprocessor).processBatch(datagram, super::processPacket);
+        } else {
+            int trailing = DatagramSplitter.split(datagram, this::preprocessAndForward);
+            if (trailing > 0) {
+                log.warn("Ignoring {} trailing bytes of datagram that do not form a complete packet", trailing);
+            }
+        }
+    }
+
+    private void preprocessAndForward(TmPacket packet) {
+        TmPacket pkt = preprocessor.process(packet);
+        if (pkt != null) {
+            super.processPacket(pkt);
+        }
+    }
+
+    private PacketPreprocessor getPreprocessor() {
+        return preprocessor != null ? preprocessor : packetPreprocessor;
+    }
+
+    // Called by Yamcs once the SystemParametersService is available
+    @Override
+    public void setupSystemParameters(SystemParametersService sps) {
+        super.setupSystemParameters(sps);
+        if (getPreprocessor() instanceof MyPacketPreprocessor) {
+            myPreprocessor = (MyPacketPreprocessor) getPreprocessor();
+            myPreprocessor.setupSystemParameters(sps, LINK_NAMESPACE + linkName);
+        }
+        if (resequencer != null) {
+            spReorderedCount = sps.createSystemParameter(LINK_NAMESPACE + linkName + "/reorderedCount", Type.SINT64,
+                    "Number of packets that were held and released in order after the missing packets arrived");
+            spGivenUpCount = sps.createSystemParameter(LINK_NAMESPACE + linkName + "/givenUpCount", Type.SINT64,
+                    "Number of sequence counts that were skipped because their packet did not arrive in time");
+        }
+        if (latency != null) {
+            latency.setupSystemParameters(sps, LINK_NAMESPACE + linkName);
+        }
+        if (decimator != null) {
+            spDecimatedCount = sps.createSystemParameter(LINK_NAMESPACE + linkName + "/decimatedCount", Type.SINT64,
+                    "Number of packets that were archived but not sent to the realtime processor");
+        }
+    }
+
+    // Called by Yamcs at regular intervals to collect the values of the system parameters
+    @Override
+    protected void collectSystemParameters(long time, List<ParameterValue> list) {
+        super.collectSystemParameters(time, list);
+        if (myPreprocessor != null) {
+            myPreprocessor.collectSystemParameters(time, list);
+        }
+        if (resequencer != null) {
+            list.add(SystemParametersService.getPV(spReorderedCount, time, resequencer.getReorderedCount()));
+            list.add(SystemParametersService.getPV(spGivenUpCount, time, resequencer.getGivenUpCount()));
+        }
+        if (latency != null) {
+            latency.collectSystemParameters(time, list);
+        }
+        if (decimator != null) {
+            list.add(SystemParametersService.getPV(spDecimatedCount, time, decimator.getDecimatedCount()));
+        }
+    }
+
+    @Override
+    public Map<String, Object> getExtraInfo() {
+        Map<String, Object> extra = super.getExtraInfo();
+        if (resequencer != null) {
+            extra.put("Reordered packets", resequencer.getReorderedCount());
+            extra.put("Given up packets", resequencer.getGivenUpCount());
+        }
+        if (decimator != null) {
+            extra.put("Decimated packets", decimator.getDecimatedCount());
+        }
+        if (router != null) {
+            extra.put("Rerouted packets", router.getReroutedCount());
+        }
+        if (latency != null) {
+            extra.putAll(latency.getExtraInfo());
+        }
+        return extra;
+    }
+
+    @Override
+    public void resetCounters() {
+        super.resetCounters();
+        if (resequencer != null) {
+            resequencer.resetCounters();
+        }
+        if (decimator != null) {
+            decimator.resetCounters();
+        }
+    }
+}
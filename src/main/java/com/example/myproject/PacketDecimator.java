@@ -0,0 +1,119 @@
+package com.example.myproject;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.yamcs.ConfigurationException;
+import org.yamcs.TmPacket;
+import org.yamcs.YConfiguration;
+import org.yamcs.tctm.TmSink;
+import org.yamcs.yarch.Stream;
+import org.yamcs.yarch.YarchDatabase;
+
+/**
+ * Reduces the rate at which the packets of selected APIDs reach the realtime processor, while keeping all of them in
+ * the archive.
+ * <p>
+ * For each APID, either one packet in N is kept, or at most one packet per interval of generation time. Kept packets
+ * are passed to the next sink, the other ones are emitted on a separate stream (tm_dump by default) that is recorded
+ * but not processed. Each packet thus goes to exactly one of the two streams and is archived once.
+ * <p>
+ * The realtime filler of the parameter archive only gets the parameters of the kept packets. The parameters of the
+ * other packets are added to the parameter archive by its back filler, which has to be enabled.
+ * <p>
+ * The decision is taken from the APID and sequence count word set by the preprocessor as sequence count of the packet.
+ * When the keep ratio does not divide 16384, the spacing is irregular where the sequence count wraps around.
+ */
+public class PacketDecimator implements TmSink {
+
+    private final String linkName;
+    private final Stream dumpStream;
+
+    // Per APID, 0 if not decimated
+    private final int[] keepOneIn = new int[ApidSeqTracker.NUM_APIDS];
+    private final long[] interval = new long[ApidSeqTracker.NUM_APIDS];
+    private final long[] lastKept = new long[ApidSeqTracker.NUM_APIDS];
+
+    private final LongAdder decimatedCount = new LongAdder();
+    private volatile TmSink next;
+
+    /**
+     * @param config
+     *            the {@code decimation} section of the link configuration
+     */
+    public PacketDecimator(String yamcsInstance, String linkName, YConfiguration config) {
+        this.linkName = linkName;
+        String streamName = config.getString("stream", "tm_dump");
+        dumpStream = YarchDatabase.getInstance(yamcsInstance).getStream(streamName);
+        if (dumpStream == null) {
+            throw new ConfigurationException("Cannot find stream '" + streamName + "'");
+        }
+
+        for (YConfiguration apidConfig : config.getConfigList("apids")) {
+            int apid = apidConfig.getInt("apid");
+            if (apid < 0 || apid >= ApidSeqTracker.NUM_APIDS) {
+                throw new ConfigurationException("Invalid APID " + apid);
+            }
+            if (apidConfig.containsKey("keepOneIn") == apidConfig.containsKey("interval")) {
+                throw new ConfigurationException(
+                        "Exactly one of keepOneIn or interval has to be specified for APID " + apid);
+            }
+            if (apidConfig.containsKey("keepOneIn")) {
+                keepOneIn[apid] = apidConfig.getInt("keepOneIn");
+                if (keepOneIn[apid] < 1) {
+                    throw new ConfigurationException("keepOneIn must be at least 1 for APID " + apid);
+                }
+            } else {
+                interval[apid] = apidConfig.getLong("interval");
+                if (interval[apid] < 1) {
+                    throw new ConfigurationException("interval must be at least 1 for APID " + apid);
+                }
+                lastKept[apid] = Long.MIN_VALUE;
+            }
+        }
+    }
+
+    public void setNext(TmSink next) {
+        this.next = next;
+    }
+
+    @Override
+    public void processPacket(TmPacket packet) {
+        if (packet.isInvalid() || keep(packet.getSeqCount(), packet.getGenerationTime())) {
+            next.processPacket(packet);
+        } else {
+            decimatedCount.increment();
+            dumpStream.emitTuple(TmStreamRouter.toTuple(packet, linkName));
+        }
+    }
+
+    private boolean keep(int apidseqcount, long gentime) {
+        int apid = CcsdsHeader.apid(apidseqcount);
+        int n = keepOneIn[apid];
+        if (n > 0) {
+            return CcsdsHeader.seqCount(apidseqcount) % n == 0;
+        }
+        long dt = interval[apid];
+        if (dt == 0) {
+            return true;
+        }
+        // The resequencer timer may release packets concurrently with the link thread
+        synchronized (lastKept) {
+            if (lastKept[apid] != Long.MIN_VALUE && gentime - lastKept[apid] < dt && gentime >= lastKept[apid]) {
+                return false;
+            }
+            lastKept[apid] = gentime;
+            return true;
+        }
+    }
+
+    /**
+     * @return the number of packets that were not sent to the realtime stream
+     */
+    public long getDecimatedCount() {
+        return decimatedCount.sum();
+    }
+
+    public void resetCounters() {
+        decimatedCount.reset();
+    }
+}
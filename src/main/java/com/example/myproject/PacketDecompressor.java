@@ -0,0 +1,200 @@
+package com.example.myproject;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.yamcs.ConfigurationException;
+import org.yamcs.TmPacket;
+import org.yamcs.YConfiguration;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersService;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.tctm.ErrorDetectionWordCalculator;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.UnitType;
+
+/**
+ * Decompresses the user data of the packets of selected APIDs.
+ * <p>
+ * The bytes before the configured offset (at least the primary header) are copied unchanged, the bytes after it are
+ * inflated. If the packet ends with an error control field, this field is not part of the compressed data; it is
+ * computed again over the decompressed packet, so that the packet has the same layout as the packets which are not
+ * compressed. The packet length field is rewritten to match the decompressed packet. Packets that cannot be
+ * decompressed are marked invalid.
+ * <p>
+ * The {@link Inflater}s and their output buffers are kept in a pool and reused, so that the only allocation per
+ * packet is the decompressed packet itself.
+ */
+public class PacketDecompressor {
+
+    static final String EVENT_TYPE = "DECOMPRESSION_FAILED";
+
+    private final long[] apids = new long[ApidSeqTracker.NUM_APIDS / 64];
+    private final int offset;
+    private final ErrorDetectionWordCalculator errorDetectionCalculator;
+    private final int trailerLength;
+    private final boolean nowrap;
+
+    private final ConcurrentLinkedQueue<Decompressor> pool = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder packetCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder decompressedBytes = new LongAdder();
+
+    private Parameter spPacketCount;
+    private Parameter spFailedCount;
+    private Parameter spRatio;
+    private Parameter spThroughput;
+    private long lastCollectionTime = Long.MIN_VALUE;
+    private long lastDecompressedBytes;
+
+    /**
+     * @param config
+     *            the {@code decompression} section of the preprocessor configuration
+     * @param errorDetectionCalculator
+     *            calculator of the error control field at the end of the packets, or null if they have none
+     */
+    public PacketDecompressor(YConfiguration config, ErrorDetectionWordCalculator errorDetectionCalculator) {
+        String algorithm = config.getString("algorithm", "DEFLATE");
+        if (!"DEFLATE".equals(algorithm)) {
+            throw new ConfigurationException("Unsupported decompression algorithm '" + algorithm
+                    + "'; only DEFLATE is available");
+        }
+        nowrap = config.getBoolean("nowrap", false);
+        offset = config.getInt("offset", CcsdsHeader.PRIMARY_HEADER_LENGTH);
+        if (offset < CcsdsHeader.PRIMARY_HEADER_LENGTH) {
+            throw new ConfigurationException("The decompression offset must be at least "
+                    + CcsdsHeader.PRIMARY_HEADER_LENGTH);
+        }
+        this.errorDetectionCalculator = errorDetectionCalculator;
+        trailerLength = (errorDetectionCalculator != null) ? errorDetectionCalculator.sizeInBits() / 8 : 0;
+        List<Integer> apidList = config.getList("apids");
+        for (int apid : apidList) {
+            if (apid < 0 || apid >= ApidSeqTracker.NUM_APIDS) {
+                throw new ConfigurationException("Invalid APID " + apid);
+            }
+            apids[apid >>> 6] |= 1L << apid;
+        }
+    }
+
+    public boolean isCompressed(int apid) {
+        return (apids[apid >>> 6] & (1L << apid)) != 0;
+    }
+
+    /**
+     * @param hasTrailer
+     *            false if the packet does not end with an error control field, although one is configured, e.g.
+     *            because it has been reassembled from segments
+     * @return the decompressed packet, or null if the data could not be decompressed
+     */
+    public TmPacket decompress(TmPacket packet, boolean hasTrailer) {
+        TmPacket pkt = inflate(packet, hasTrailer ? trailerLength : 0);
+        if (pkt == null) {
+            failedCount.increment();
+        }
+        return pkt;
+    }
+
+    private TmPacket inflate(TmPacket packet, int trailerLength) {
+        byte[] bytes = packet.getPacket();
+        int compressedLength = bytes.length - offset - trailerLength;
+        if (compressedLength <= 0) {
+            return null;
+        }
+
+        Decompressor d = pool.poll();
+        if (d == null) {
+            d = new Decompressor(nowrap);
+        }
+        try {
+            d.inflater.setInput(bytes, offset, compressedLength);
+            int n = 0;
+            while (!d.inflater.finished()) {
+                if (n == d.buffer.length) {
+                    if (offset + n + trailerLength >= SegmentReassembler.MAX_PACKET_LENGTH) {
+                        return null;
+                    }
+                    d.buffer = Arrays.copyOf(d.buffer, 2 * n);
+                }
+                int k = d.inflater.inflate(d.buffer, n, d.buffer.length - n);
+                if (k == 0 && (d.inflater.needsInput() || d.inflater.needsDictionary())) {
+                    return null;
+                }
+                n += k;
+            }
+            int length = offset + n + trailerLength;
+            if (length > SegmentReassembler.MAX_PACKET_LENGTH) {
+                return null;
+            }
+            byte[] result = new byte[length];
+            System.arraycopy(bytes, 0, result, 0, offset);
+            System.arraycopy(d.buffer, 0, result, offset, n);
+            CcsdsHeader.setPacketLength(result, length);
+            if (trailerLength > 0) {
+                // The received error control field covers the compressed packet
+                long word = errorDetectionCalculator.compute(result, 0, offset + n);
+                for (int i = length - 1; i >= offset + n; i--, word >>>= 8) {
+                    result[i] = (byte) word;
+                }
+            }
+
+            packetCount.increment();
+            compressedBytes.add(bytes.length);
+            decompressedBytes.add(length);
+
+            TmPacket pkt = new TmPacket(packet.getReceptionTime(), result);
+            pkt.setEarthReceptionTime(packet.getEarthReceptionTime());
+            return pkt;
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            d.inflater.reset();
+            pool.offer(d);
+        }
+    }
+
+    public void setupSystemParameters(SystemParametersService sps, String namespace) {
+        String prefix = namespace + "/decompression/";
+        spPacketCount = sps.createSystemParameter(prefix + "packetCount", Type.SINT64,
+                "Number of packets decompressed");
+        spFailedCount = sps.createSystemParameter(prefix + "failedCount", Type.SINT64,
+                "Number of packets that could not be decompressed");
+        spRatio = sps.createSystemParameter(prefix + "ratio", Type.DOUBLE,
+                "Total size of the decompressed packets divided by the size of the compressed packets");
+        spThroughput = sps.createSystemParameter(prefix + "throughput", Type.DOUBLE, new UnitType("B/s"),
+                "Number of decompressed bytes per second since the previous collection");
+    }
+
+    public void collectSystemParameters(long time, List<ParameterValue> list) {
+        if (spPacketCount == null) {
+            return;
+        }
+        long in = compressedBytes.sum();
+        long out = decompressedBytes.sum();
+        double elapsed = (lastCollectionTime == Long.MIN_VALUE) ? 0 : (time - lastCollectionTime) / 1000.0;
+        double throughput = (elapsed > 0) ? (out - lastDecompressedBytes) / elapsed : 0;
+        lastCollectionTime = time;
+        lastDecompressedBytes = out;
+
+        list.add(SystemParametersService.getPV(spPacketCount, time, packetCount.sum()));
+        list.add(SystemParametersService.getPV(spFailedCount, time, failedCount.sum()));
+        if (in > 0) {
+            list.add(SystemParametersService.getPV(spRatio, time, (double) out / in));
+        }
+        list.add(SystemParametersService.getPV(spThroughput, time, throughput));
+    }
+
+    static class Decompressor {
+        final Inflater inflater;
+        byte[] buffer = new byte[4096];
+
+        Decompressor(boolean nowrap) {
+            inflater = new Inflater(nowrap);
+        }
+    }
+}
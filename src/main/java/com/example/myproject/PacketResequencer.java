@@ -0,0 +1,180 @@
+package com.example.myproject;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.yamcs.TmPacket;
+import org.yamcs.tctm.TmSink;
+
+/**
+ * Puts CCSDS packets back in sequence count order, per APID.
+ * <p>
+ * A packet that arrives ahead of the expected sequence count is held in a small ring buffer of its APID, indexed by
+ * the 14-bit count, until the missing packets arrive. Held packets are given up on, and released with a gap, when the
+ * buffer overflows or when the oldest one has waited longer than the configured delay.
+ * <p>
+ * In-order packets, which are the vast majority, are released immediately without being buffered.
+ */
+public class PacketResequencer {
+
+    private final int windowSize;
+    private final long maxDelayMillis;
+    private final TmSink sink;
+
+    private final ApidBuffer[] buffers = new ApidBuffer[ApidSeqTracker.NUM_APIDS];
+
+    private final AtomicLong reorderedCount = new AtomicLong();
+    private final AtomicLong givenUpCount = new AtomicLong();
+
+    /**
+     * @param windowSize
+     *            maximum number of packets held per APID
+     * @param maxDelayMillis
+     *            maximum time a packet is held while waiting for the missing ones
+     * @param sink
+     *            where released packets are sent to
+     */
+    public PacketResequencer(int windowSize, long maxDelayMillis, TmSink sink) {
+        this.windowSize = windowSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.sink = sink;
+    }
+
+    public synchronized void offer(TmPacket packet, long now) {
+        byte[] bytes = packet.getPacket();
+        if (bytes.length < CcsdsHeader.PRIMARY_HEADER_LENGTH) { // Let the preprocessor deal with it
+            sink.processPacket(packet);
+            return;
+        }
+        int apidseqcount = CcsdsHeader.apidSeqCount(bytes);
+        int apid = CcsdsHeader.apid(apidseqcount);
+        int seq = CcsdsHeader.seqCount(apidseqcount);
+
+        ApidBuffer buf = buffers[apid];
+        if (buf == null) {
+            buf = buffers[apid] = new ApidBuffer(windowSize);
+        }
+        if (buf.expected == ApidSeqTracker.UNSEEN) {
+            buf.expected = seq;
+        }
+
+        int delta = (seq - buf.expected) & 0x3FFF;
+        if (delta == 0) {
+            sink.processPacket(packet);
+            buf.expected = (seq + 1) & 0x3FFF;
+            if (buf.held > 0) {
+                reorderedCount.addAndGet(drain(buf));
+            }
+        } else if (delta >= 0x2000) {
+            // Behind the expected count: we already gave up on it, or it is a duplicate
+            sink.processPacket(packet);
+        } else if (delta < windowSize) {
+            int idx = seq % windowSize;
+            if (buf.slots[idx] != null) { // Duplicate of a held packet
+                sink.processPacket(packet);
+                return;
+            }
+            buf.slots[idx] = packet;
+            buf.deadlines[idx] = now + maxDelayMillis;
+            buf.held++;
+        } else {
+            // Too far ahead to wait for the missing packets
+            while (buf.held > 0) {
+                skipToNextHeld(buf);
+                drain(buf);
+            }
+            givenUpCount.addAndGet((seq - buf.expected) & 0x3FFF);
+            sink.processPacket(packet);
+            buf.expected = (seq + 1) & 0x3FFF;
+        }
+    }
+
+    /**
+     * Releases the packets that have been held for longer than the maximum delay, together with the packets that
+     * follow them.
+     */
+    public synchronized void expire(long now) {
+        for (ApidBuffer buf : buffers) {
+            if (buf == null) {
+                continue;
+            }
+            while (buf.held > 0 && now >= oldestDeadline(buf)) {
+                skipToNextHeld(buf);
+                drain(buf);
+            }
+        }
+    }
+
+    /**
+     * Releases all the held packets, in sequence count order, giving up on the missing ones. Called when the link
+     * stops, so that the held packets are not lost.
+     */
+    public synchronized void flush() {
+        expire(Long.MAX_VALUE);
+    }
+
+    private long oldestDeadline(ApidBuffer buf) {
+        long oldest = Long.MAX_VALUE;
+        for (int i = 0; i < windowSize; i++) {
+            if (buf.slots[i] != null && buf.deadlines[i] < oldest) {
+                oldest = buf.deadlines[i];
+            }
+        }
+        return oldest;
+    }
+
+    // Gives up on the missing packets before the first held one
+    private void skipToNextHeld(ApidBuffer buf) {
+        int skipped = 0;
+        while (buf.slots[buf.expected % windowSize] == null) {
+            buf.expected = (buf.expected + 1) & 0x3FFF;
+            skipped++;
+        }
+        givenUpCount.addAndGet(skipped);
+    }
+
+    // Releases the held packets that are now in sequence
+    private int drain(ApidBuffer buf) {
+        int released = 0;
+        int idx;
+        while (buf.slots[idx = buf.expected % windowSize] != null) {
+            TmPacket packet = buf.slots[idx];
+            buf.slots[idx] = null;
+            buf.held--;
+            sink.processPacket(packet);
+            buf.expected = (buf.expected + 1) & 0x3FFF;
+            released++;
+        }
+        return released;
+    }
+
+    /**
+     * @return the number of packets that were held and released in order after the missing packets arrived.
+     */
+    public long getReorderedCount() {
+        return reorderedCount.get();
+    }
+
+    /**
+     * @return the number of sequence counts that were skipped because their packet did not arrive in time.
+     */
+    public long getGivenUpCount() {
+        return givenUpCount.get();
+    }
+
+    public void resetCounters() {
+        reorderedCount.set(0);
+        givenUpCount.set(0);
+    }
+
+    static class ApidBuffer {
+        int expected = ApidSeqTracker.UNSEEN;
+        int held;
+        final TmPacket[] slots;
+        final long[] deadlines;
+
+        ApidBuffer(int windowSize) {
+            slots = new TmPacket[windowSize];
+            deadlines = new long[windowSize];
+        }
+    }
+}
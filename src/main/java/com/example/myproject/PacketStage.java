@@ -0,0 +1,18 @@
+package com.example.myproject;
+
+import org.yamcs.TmPacket;
+
+/**
+ * One step of the processing done by {@link MyPacketPreprocessor} on each packet.
+ */
+@FunctionalInterface
+public interface PacketStage {
+
+    /**
+     * @param apidseqcount
+     *            the first 4 bytes of the packet: APID and sequence count, with the flags
+     * @return the packet to pass to the next stage, which may be a new one, or null to drop the packet. A packet
+     *         marked invalid is not passed to the following stages.
+     */
+    TmPacket process(TmPacket packet, int apidseqcount);
+}
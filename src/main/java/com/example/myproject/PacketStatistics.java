@@ -0,0 +1,183 @@
+package com.example.myproject;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersService;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.UnitType;
+
+/**
+ * Per-APID link quality counters, updated by {@link MyPacketPreprocessor} and published as system parameters.
+ * <p>
+ * The counters are {@link LongAdder}s, so that the ingest thread incrementing them does not contend with the thread
+ * collecting the system parameters. The counters of an APID are allocated when its first packet is seen; after that,
+ * updating them does not allocate. Packets dropped by the APID filter, such as idle packets, are counted for the whole
+ * link, so that they do not create counters for their APID.
+ */
+public class PacketStatistics {
+
+    private final AtomicReferenceArray<ApidCounters> counters = new AtomicReferenceArray<>(ApidSeqTracker.NUM_APIDS);
+    private final LongAdder filtered = new LongAdder();
+
+    private SystemParametersService sps;
+    private String namespace;
+    private long lastCollectionTime = Long.MIN_VALUE;
+    private Parameter spFiltered;
+
+    public void received(int apid) {
+        getCounters(apid).received.increment();
+    }
+
+    public void received(int apid, int count) {
+        getCounters(apid).received.add(count);
+    }
+
+    public void lost(int apid, int count) {
+        getCounters(apid).lost.add(count);
+    }
+
+    public void duplicated(int apid) {
+        getCounters(apid).duplicated.increment();
+    }
+
+    public void reset(int apid) {
+        getCounters(apid).resets.increment();
+    }
+
+    public void outOfOrder(int apid) {
+        getCounters(apid).outOfOrder.increment();
+    }
+
+    public void suppressed(int apid) {
+        getCounters(apid).suppressed.increment();
+    }
+
+    public void corrupted(int apid) {
+        getCounters(apid).corrupted.increment();
+    }
+
+    public void filtered() {
+        filtered.increment();
+    }
+
+    /**
+     * @return the number of packets dropped by the APID filter
+     */
+    long getFiltered() {
+        return filtered.sum();
+    }
+
+    /**
+     * @return the counters of an APID, or null if nothing was counted for it
+     */
+    ApidCounters get(int apid) {
+        return counters.get(apid);
+    }
+
+    private ApidCounters getCounters(int apid) {
+        ApidCounters c = counters.get(apid);
+        if (c == null) {
+            counters.compareAndSet(apid, null, new ApidCounters());
+            c = counters.get(apid);
+        }
+        return c;
+    }
+
+    /**
+     * Called once the system parameters service is available.
+     *
+     * @param namespace
+     *            prefix of the parameter names, relative to the system parameters namespace
+     */
+    public void setupSystemParameters(SystemParametersService sps, String namespace) {
+        this.sps = sps;
+        this.namespace = namespace;
+    }
+
+    /**
+     * Adds the number of filtered packets and the current value of the counters of all APIDs seen so far to
+     * {@code list}.
+     * <p>
+     * The parameters of an APID are created the first time it is collected.
+     */
+    public void collectSystemParameters(long time, List<ParameterValue> list) {
+        if (sps == null) {
+            return;
+        }
+        double elapsed = (lastCollectionTime == Long.MIN_VALUE) ? 0 : (time - lastCollectionTime) / 1000.0;
+        lastCollectionTime = time;
+
+        if (spFiltered == null) {
+            spFiltered = sps.createSystemParameter(namespace + "/filtered", Type.SINT64,
+                    "Number of packets dropped by the APID filter");
+        }
+        list.add(SystemParametersService.getPV(spFiltered, time, filtered.sum()));
+
+        for (int apid = 0; apid < ApidSeqTracker.NUM_APIDS; apid++) {
+            ApidCounters c = counters.get(apid);
+            if (c == null) {
+                continue;
+            }
+            if (c.spReceived == null) {
+                createParameters(apid, c);
+            }
+            long received = c.received.sum();
+            double rate = (elapsed > 0) ? (received - c.lastReceived) / elapsed : 0;
+            c.lastReceived = received;
+
+            list.add(SystemParametersService.getPV(c.spReceived, time, received));
+            list.add(SystemParametersService.getPV(c.spLost, time, c.lost.sum()));
+            list.add(SystemParametersService.getPV(c.spDuplicated, time, c.duplicated.sum()));
+            list.add(SystemParametersService.getPV(c.spResets, time, c.resets.sum()));
+            list.add(SystemParametersService.getPV(c.spOutOfOrder, time, c.outOfOrder.sum()));
+            list.add(SystemParametersService.getPV(c.spSuppressed, time, c.suppressed.sum()));
+            list.add(SystemParametersService.getPV(c.spCorrupted, time, c.corrupted.sum()));
+            list.add(SystemParametersService.getPV(c.spPacketRate, time, rate));
+        }
+    }
+
+    private void createParameters(int apid, ApidCounters c) {
+        String prefix = namespace + "/apid/" + apid + "/";
+        c.spReceived = sps.createSystemParameter(prefix + "received", Type.SINT64,
+                "Number of packets received for APID " + apid);
+        c.spLost = sps.createSystemParameter(prefix + "lost", Type.SINT64,
+                "Number of packets lost for APID " + apid + ", derived from the CCSDS sequence count");
+        c.spDuplicated = sps.createSystemParameter(prefix + "duplicated", Type.SINT64,
+                "Number of packets for APID " + apid + " received with the same sequence count as the previous one");
+        c.spResets = sps.createSystemParameter(prefix + "resets", Type.SINT64,
+                "Number of times the sequence count of APID " + apid + " restarted, e.g. after an onboard reboot");
+        c.spOutOfOrder = sps.createSystemParameter(prefix + "outOfOrder", Type.SINT64,
+                "Number of packets for APID " + apid + " received after a packet with a higher sequence count");
+        c.spSuppressed = sps.createSystemParameter(prefix + "suppressed", Type.SINT64,
+                "Number of duplicate packets for APID " + apid + " dropped by the preprocessor");
+        c.spCorrupted = sps.createSystemParameter(prefix + "corrupted", Type.SINT64,
+                "Number of packets for APID " + apid + " that failed the packet error control check");
+        c.spPacketRate = sps.createSystemParameter(prefix + "packetRate", Type.DOUBLE, new UnitType("p/s"),
+                "Number of packets per second for APID " + apid + " since the previous collection");
+    }
+
+    static class ApidCounters {
+        final LongAdder received = new LongAdder();
+        final LongAdder lost = new LongAdder();
+        final LongAdder duplicated = new LongAdder();
+        final LongAdder resets = new LongAdder();
+        final LongAdder outOfOrder = new LongAdder();
+        final LongAdder suppressed = new LongAdder();
+        final LongAdder corrupted = new LongAdder();
+
+        // Only accessed by the collecting thread
+        long lastReceived;
+        Parameter spReceived;
+        Parameter spLost;
+        Parameter spDuplicated;
+        Parameter spResets;
+        Parameter spOutOfOrder;
+        Parameter spSuppressed;
+        Parameter spCorrupted;
+        Parameter spPacketRate;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.myproject;
+
+import java.util.Arrays;
+
+import org.yamcs.TmPacket;
+import org.yamcs.events.EventProducer;
+
+/**
+ * Reassembles CCSDS segmented packets, based on the sequence (group) flags of the primary header.
+ * <p>
+ * The first segment is kept whole, including its primary and secondary headers. The user data of the following
+ * segments, without their primary header, is appended to it. When the last segment arrives, a single packet is
+ * emitted, with the length field rewritten and the sequence flags set to unsegmented.
+ * <p>
+ * Each APID has its own buffer, which is reused from one group to the next and only grows when a larger group is
+ * received. A group is discarded if a segment is missing, or if it takes longer than the timeout to complete; the
+ * timeout is checked when the next segment of the same APID is received.
+ */
+public class SegmentReassembler {
+
+    static final String EVENT_TYPE = "SEGMENT_LOST";
+
+    // Largest packet that can be described by the 16-bit length field
+    static final int MAX_PACKET_LENGTH = 0xFFFF + 7;
+
+    private final long timeoutMillis;
+    private final int trailerLength;
+    private final EventProducer eventProducer;
+
+    private final Group[] groups = new Group[ApidSeqTracker.NUM_APIDS];
+
+    /**
+     * @param timeoutMillis
+     *            maximum time between the first and the last segment of a group
+     * @param trailerLength
+     *            number of bytes at the end of each segment that are not part of the user data (e.g. the packet
+     *            error control field)
+     */
+    public SegmentReassembler(long timeoutMillis, int trailerLength, EventProducer eventProducer) {
+        this.timeoutMillis = timeoutMillis;
+        this.trailerLength = trailerLength;
+        this.eventProducer = eventProducer;
+    }
+
+    /**
+     * @param apidseqcount
+     *            the first 4 bytes of the packet
+     * @return the packet itself if it is not segmented, the reassembled packet if this was the last segment, or null
+     *         if the packet was kept as part of an incomplete group.
+     */
+    public synchronized TmPacket process(TmPacket packet, int apidseqcount) {
+        byte[] bytes = packet.getPacket();
+        int apid = CcsdsHeader.apid(apidseqcount);
+        int seq = CcsdsHeader.seqCount(apidseqcount);
+        int flags = CcsdsHeader.seqFlags(apidseqcount);
+        Group group = groups[apid];
+
+        if (flags == CcsdsHeader.SEQ_FLAGS_UNSEGMENTED) {
+            if (group != null && group.length > 0) {
+                discard(apid, group, "unsegmented packet received");
+            }
+            return packet;
+        }
+
+        long now = packet.getReceptionTime();
+        if (flags == CcsdsHeader.SEQ_FLAGS_FIRST) {
+            if (group == null) {
+                group = groups[apid] = new Group();
+            } else if (group.length > 0) {
+                discard(apid, group, "new group started");
+            }
+            group.append(bytes, 0, bytes.length - trailerLength);
+            group.startTime = now;
+            group.nextSeq = (seq + 1) & 0x3FFF;
+            return null;
+        }
+
+        // Continuation or last segment
+        if (group == null || group.length == 0) {
+            eventProducer.sendWarning(EVENT_TYPE, "Segment received without first segment for APID: " + apid);
+            return null;
+        }
+        if (seq != group.nextSeq) {
+            discard(apid, group, "segment missing");
+            return null;
+        }
+        if (now - group.startTime > timeoutMillis) {
+            discard(apid, group, "timeout");
+            return null;
+        }
+        int dataLength = bytes.length - CcsdsHeader.PRIMARY_HEADER_LENGTH - trailerLength;
+        if (group.length + dataLength > MAX_PACKET_LENGTH) {
+            discard(apid, group, "reassembled packet too long");
+            return null;
+        }
+        group.append(bytes, CcsdsHeader.PRIMARY_HEADER_LENGTH, dataLength);
+        group.nextSeq = (seq + 1) & 0x3FFF;
+
+        if (flags == CcsdsHeader.SEQ_FLAGS_CONTINUATION) {
+            return null;
+        }
+
+        byte[] reassembled = Arrays.copyOf(group.buffer, group.length);
+        group.length = 0;
+        CcsdsHeader.setPacketLength(reassembled, reassembled.length);
+        CcsdsHeader.setSeqFlags(reassembled, CcsdsHeader.SEQ_FLAGS_UNSEGMENTED);
+
+        TmPacket result = new TmPacket(now, reassembled);
+        result.setEarthReceptionTime(packet.getEarthReceptionTime());
+        return result;
+    }
+
+    private void discard(int apid, Group group, String reason) {
+        eventProducer.sendWarning(EVENT_TYPE, "Incomplete segmented packet discarded for APID: " + apid
+                + " (" + reason + ")");
+        group.length = 0;
+    }
+
+    static class Group {
+        byte[] buffer = new byte[1024];
+        int length;
+        long startTime;
+        int nextSeq;
+
+        void append(byte[] src, int offset, int n) {
+            if (length + n > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + n));
+            }
+            System.arraycopy(src, offset, buffer, length, n);
+            length += n;
+        }
+    }
+}
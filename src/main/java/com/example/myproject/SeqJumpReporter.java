@@ -0,0 +1,103 @@
+package com.example.myproject;
+
+import org.yamcs.events.EventProducer;
+
+/**
+ * Coalesces sequence count jumps into one summary event per APID and reporting window.
+ * <p>
+ * A bad pass can produce thousands of discontinuities per second. Instead of sending one event for each of them, the
+ * jumps are accumulated in primitive per-APID arrays and a single event, with the number of jumps, the number of lost
+ * packets and the first/last sequence count, is sent for each affected APID when the window expires.
+ * <p>
+ * Recording a jump is O(1) and does not allocate. Windows are closed by {@link #tick(long)}, which has to be called
+ * periodically, and not only when packets arrive, so that the last jumps before a silence are also reported.
+ * <p>
+ * A jump backwards, by less than half the counter range, is counted apart: it is not a loss of packets.
+ */
+public class SeqJumpReporter {
+
+    static final String EVENT_TYPE = "SEQ_COUNT_JUMP";
+
+    private final EventProducer eventProducer;
+    private final long intervalMillis;
+
+    private final int[] jumpCount = new int[ApidSeqTracker.NUM_APIDS];
+    private final long[] lostCount = new long[ApidSeqTracker.NUM_APIDS];
+    private final int[] backwardCount = new int[ApidSeqTracker.NUM_APIDS];
+    private final int[] firstSeq = new int[ApidSeqTracker.NUM_APIDS];
+    private final int[] lastSeq = new int[ApidSeqTracker.NUM_APIDS];
+
+    // APIDs with pending jumps, in order of first occurrence
+    private final int[] pending = new int[ApidSeqTracker.NUM_APIDS];
+    private int numPending;
+
+    private volatile long windowEnd = Long.MIN_VALUE;
+
+    /**
+     * @param intervalMillis
+     *            length of the reporting window. If 0, every jump is reported immediately.
+     */
+    public SeqJumpReporter(EventProducer eventProducer, long intervalMillis) {
+        this.eventProducer = eventProducer;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Records a jump from {@code oldseq} to {@code seq} on the given APID.
+     */
+    public synchronized void jump(int apid, int oldseq, int seq, long now) {
+        if (jumpCount[apid] == 0) {
+            firstSeq[apid] = oldseq;
+            pending[numPending++] = apid;
+        }
+        jumpCount[apid]++;
+        int delta = (seq - oldseq) & 0x3FFF;
+        if (delta < 0x2000) {
+            lostCount[apid] += delta - 1;
+        } else {
+            backwardCount[apid]++;
+        }
+        lastSeq[apid] = seq;
+
+        if (windowEnd == Long.MIN_VALUE) {
+            windowEnd = now + intervalMillis;
+        }
+        flushIfDue(now);
+    }
+
+    /**
+     * Sends the summary events if the current window has expired. Cheap enough to be called for every packet, and
+     * should also be called from a timer.
+     */
+    public void tick(long now) {
+        // Unsynchronized pre-check, so that the common case does not take the lock
+        if (windowEnd != Long.MIN_VALUE && now >= windowEnd) {
+            synchronized (this) {
+                flushIfDue(now);
+            }
+        }
+    }
+
+    private void flushIfDue(long now) {
+        if (numPending == 0 || now < windowEnd) {
+            return;
+        }
+        for (int i = 0; i < numPending; i++) {
+            int apid = pending[i];
+            if (jumpCount[apid] == 1) {
+                eventProducer.sendWarning(EVENT_TYPE, "Sequence count jump for APID: " + apid
+                        + " old seq: " + firstSeq[apid] + " newseq: " + lastSeq[apid]);
+            } else {
+                eventProducer.sendWarning(EVENT_TYPE, jumpCount[apid] + " sequence count jumps for APID: " + apid
+                        + ", " + lostCount[apid] + " packets lost"
+                        + (backwardCount[apid] > 0 ? ", " + backwardCount[apid] + " backwards" : "")
+                        + ", first seq: " + firstSeq[apid] + " last seq: " + lastSeq[apid]);
+            }
+            jumpCount[apid] = 0;
+            lostCount[apid] = 0;
+            backwardCount[apid] = 0;
+        }
+        numPending = 0;
+        windowEnd = Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.myproject;
+
+import java.util.Arrays;
+
+import org.yamcs.ConfigurationException;
+import org.yamcs.YConfiguration;
+
+/**
+ * Tells whether a discontinuity of the sequence count of an APID is a restart of the counter, rather than lost
+ * packets.
+ * <p>
+ * A restart is assumed when the onboard reboot counter, if configured, has changed since the previous packet of the
+ * APID. Otherwise, it is assumed when the new count is low and the APID has been silent for some time, as is the case
+ * after a reboot.
+ */
+public class SeqResetDetector {
+
+    private final int maxCount;
+    private final long minSilence;
+
+    // Location of the reboot counter in the packets; size 0 if not configured
+    private final int rebootCounterOffset;
+    private final int rebootCounterSize;
+
+    private final long[] lastArrival = new long[ApidSeqTracker.NUM_APIDS];
+    private final long[] lastRebootCount = new long[ApidSeqTracker.NUM_APIDS];
+
+    /**
+     * @param config
+     *            the {@code sequenceResets} section of the preprocessor configuration, may be empty
+     */
+    public SeqResetDetector(YConfiguration config) {
+        maxCount = config.getInt("maxCount", 16);
+        minSilence = config.getLong("minSilence", 5000);
+        if (config.containsKey("rebootCounter")) {
+            YConfiguration counterConfig = config.getConfig("rebootCounter");
+            rebootCounterOffset = counterConfig.getInt("offset");
+            rebootCounterSize = counterConfig.getInt("size", 1);
+            if (rebootCounterOffset < 6 || rebootCounterSize < 1 || rebootCounterSize > 4) {
+                throw new ConfigurationException(
+                        "rebootCounter offset must be at least 6, and its size between 1 and 4 bytes");
+            }
+        } else {
+            rebootCounterOffset = 0;
+            rebootCounterSize = 0;
+        }
+        Arrays.fill(lastArrival, Long.MIN_VALUE);
+        Arrays.fill(lastRebootCount, -1);
+    }
+
+    /**
+     * Records the arrival of a packet. Called for every packet, so that the silence of each APID is known.
+     *
+     * @param continuous
+     *            whether the sequence count follows the previous one
+     * @return true if the count has restarted
+     */
+    public boolean update(int apid, int seq, byte[] bytes, long now, boolean continuous) {
+        long previousArrival = lastArrival[apid];
+        lastArrival[apid] = now;
+
+        if (rebootCounterSize > 0 && bytes.length >= rebootCounterOffset + rebootCounterSize) {
+            long rebootCount = readCounter(bytes);
+            long previousCount = lastRebootCount[apid];
+            lastRebootCount[apid] = rebootCount;
+            if (previousCount != -1 && rebootCount != previousCount) {
+                return true;
+            }
+        }
+        if (continuous) {
+            return false;
+        }
+        // No packet since the start of Yamcs counts as silence (the previous count may come from the state file)
+        return seq <= maxCount && (previousArrival == Long.MIN_VALUE || now - previousArrival >= minSilence);
+    }
+
+    /**
+     * @return the time in milliseconds without packets of an APID after which a low count is a reset
+     */
+    public long getMinSilence() {
+        return minSilence;
+    }
+
+    /**
+     * Tells, without recording anything, whether the reboot counter of the packet differs from the one of the previous
+     * packet of the APID given to {@link #update}. Always false if the reboot counter is not configured.
+     */
+    public boolean rebootCounterChanged(int apid, byte[] bytes) {
+        if (rebootCounterSize == 0 || bytes.length < rebootCounterOffset + rebootCounterSize) {
+            return false;
+        }
+        long previousCount = lastRebootCount[apid];
+        return previousCount != -1 && readCounter(bytes) != previousCount;
+    }
+
+    private long readCounter(byte[] bytes) {
+        long v = 0;
+        for (int i = 0; i < rebootCounterSize; i++) {
+            v = (v << 8) | (bytes[rebootCounterOffset + i] & 0xFF);
+        }
+        return v;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.myproject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.yamcs.ConfigurationException;
+import org.yamcs.YConfiguration;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersService;
+import org.yamcs.protobuf.Commanding.CommandId;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.UnitType;
+
+/**
+ * Packs consecutive TC packets into datagrams of at most mtu bytes.
+ * <p>
+ * A datagram is complete when the next packet does not fit in it, or when its first packet has waited flushDelay
+ * milliseconds. The packets are simply concatenated: the receiver splits them with the CCSDS packet length. A packet
+ * larger than the mtu is sent in a datagram of its own.
+ * <p>
+ * The packer is used by the thread of the link only, except for the metrics which are read by the system parameters
+ * collection.
+ */
+public class TcDatagramPacker {
+
+    private static final UnitType PACKETS = new UnitType("packets");
+
+    private final int mtu;
+    private final long flushDelayNanos;
+
+    private final byte[] buffer;
+    private int length;
+    private final List<CommandId> commands = new ArrayList<>();
+    private long deadline;
+
+    private final AtomicInteger datagramCount = new AtomicInteger();
+    private final LongAdder packetCount = new LongAdder();
+    private long lastDatagramCount;
+    private long lastPacketCount;
+
+    private Parameter spPacketsPerDatagram;
+
+    public TcDatagramPacker(YConfiguration config) {
+        mtu = config.getInt("mtu", 1472);
+        long flushDelay = config.getLong("flushDelay", 10);
+        if (mtu < 1 || flushDelay < 0) {
+            throw new ConfigurationException("Invalid packing mtu " + mtu + " or flushDelay " + flushDelay);
+        }
+        flushDelayNanos = TimeUnit.MILLISECONDS.toNanos(flushDelay);
+        buffer = new byte[mtu];
+    }
+
+    /**
+     * @return true if the packet can be added to the datagram being filled
+     */
+    public boolean fits(byte[] packet) {
+        return length + packet.length <= mtu;
+    }
+
+    /**
+     * Adds a packet to the datagram being filled. The packet has to {@link #fits fit}.
+     */
+    public void add(CommandId cmdId, byte[] packet) {
+        if (commands.isEmpty()) {
+            deadline = System.nanoTime() + flushDelayNanos;
+        }
+        System.arraycopy(packet, 0, buffer, length, packet.length);
+        length += packet.length;
+        commands.add(cmdId);
+    }
+
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * @return true if the datagram being filled has to be sent now
+     */
+    public boolean isDue(long now) {
+        return !commands.isEmpty() && now - deadline >= 0;
+    }
+
+    /**
+     * @return the number of milliseconds, rounded up, until the datagram being filled has to be sent
+     */
+    public long millisToDeadline(long now) {
+        return Math.max(0, (deadline - now + 999_999) / 1_000_000);
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return the commands of the datagram being filled, in the order of their packets
+     */
+    public List<CommandId> getCommands() {
+        return commands;
+    }
+
+    /**
+     * Counts a datagram sent with the given number of packets.
+     *
+     * @return the number of the datagram, starting from 1 when the link starts
+     */
+    public int countDatagram(int packets) {
+        packetCount.add(packets);
+        return datagramCount.incrementAndGet();
+    }
+
+    /**
+     * Empties the datagram once it has been sent, or has failed.
+     */
+    public void clear() {
+        length = 0;
+        commands.clear();
+    }
+
+    public void setupSystemParameters(SystemParametersService sps, String namespace) {
+        spPacketsPerDatagram = sps.createSystemParameter(namespace + "/packing/packetsPerDatagram", Type.DOUBLE,
+                PACKETS, "Average number of TC packets per datagram since the previous collection");
+    }
+
+    public void collectSystemParameters(long time, List<ParameterValue> list) {
+        if (spPacketsPerDatagram == null) {
+            return;
+        }
+        long datagrams = datagramCount.get();
+        long packets = packetCount.sum();
+        if (datagrams > lastDatagramCount) {
+            double packetsPerDatagram = (packets - lastPacketCount) / (double) (datagrams - lastDatagramCount);
+            list.add(SystemParametersService.getPV(spPacketsPerDatagram, time, packetsPerDatagram));
+        }
+        lastDatagramCount = datagrams;
+        lastPacketCount = packets;
+    }
+}
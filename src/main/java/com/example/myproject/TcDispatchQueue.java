@@ -0,0 +1,403 @@
+package com.example.myproject;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.yamcs.ConfigurationException;
+import org.yamcs.YConfiguration;
+import org.yamcs.commanding.PreparedCommand;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersService;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.UnitType;
+
+/**
+ * Command queue of a TC link, which releases the commands by priority class, each class being paced by its own token
+ * bucket.
+ * <p>
+ * It replaces the queue between the threads submitting the commands and the single thread of the link that sends them.
+ * Each class has a lock-free queue: submitting a command does not lock, and only wakes up the link thread if it is
+ * waiting. The link thread takes the oldest command of the first class, in configuration order, whose bucket has a
+ * token. A class that has used up its tokens does not hold back the classes after it.
+ * <p>
+ * The commands are assigned to a class by their qualified name. The class without a list of commands receives all the
+ * other commands.
+ */
+public class TcDispatchQueue extends AbstractQueue<PreparedCommand> implements BlockingQueue<PreparedCommand> {
+
+    private static final UnitType MILLISECONDS = new UnitType("ms");
+    private static final UnitType COMMANDS_PER_SECOND = new UnitType("cmd/s");
+
+    private final PriorityClass[] classes;
+    private final Map<String, PriorityClass> classByCommand = new HashMap<>();
+    private final PriorityClass defaultClass;
+
+    // Commands without MetaCommand, such as the signal used to stop the link thread, are passed on first
+    private final ConcurrentLinkedQueue<PreparedCommand> signals = new ConcurrentLinkedQueue<>();
+
+    private final int capacity;
+    private final AtomicInteger size = new AtomicInteger();
+
+    // The link thread, while it waits for a command
+    private volatile Thread waiter;
+
+    private Parameter spDepth;
+    private long lastCollectionTime = Long.MIN_VALUE;
+
+    /**
+     * @param config
+     *            the {@code dispatch} section of the link configuration
+     * @param capacity
+     *            maximum number of queued commands, over all the classes
+     */
+    public TcDispatchQueue(YConfiguration config, int capacity) {
+        this.capacity = capacity;
+        List<YConfiguration> classConfigs = config.getConfigList("classes");
+        classes = new PriorityClass[classConfigs.size()];
+        PriorityClass dflt = null;
+        for (int i = 0; i < classes.length; i++) {
+            YConfiguration c = classConfigs.get(i);
+            classes[i] = new PriorityClass(c.getString("name"), c.containsKey("rate") ? c.getDouble("rate") : 0,
+                    c.getInt("burst", 1));
+            if (c.containsKey("commands")) {
+                List<String> commands = c.getList("commands");
+                for (String command : commands) {
+                    if (classByCommand.put(command, classes[i]) != null) {
+                        throw new ConfigurationException("Command " + command + " is in several dispatch classes");
+                    }
+                }
+            } else if (dflt == null) {
+                dflt = classes[i];
+            } else {
+                throw new ConfigurationException("Only one dispatch class may be without commands");
+            }
+        }
+        if (dflt == null) {
+            throw new ConfigurationException("One dispatch class must be without commands, to receive the others");
+        }
+        defaultClass = dflt;
+    }
+
+    private PriorityClass getClass(PreparedCommand pc) {
+        PriorityClass c = classByCommand.get(pc.getMetaCommand().getQualifiedName());
+        return (c == null) ? defaultClass : c;
+    }
+
+    @Override
+    public boolean offer(PreparedCommand pc) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return false;
+        }
+        if (pc.getMetaCommand() == null) {
+            signals.offer(pc);
+        } else {
+            PriorityClass c = getClass(pc);
+            c.depth.incrementAndGet();
+            c.queue.offer(new Entry(pc, System.nanoTime()));
+        }
+        Thread t = waiter;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean offer(PreparedCommand pc, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(pc)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(1)));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void put(PreparedCommand pc) throws InterruptedException {
+        while (!offer(pc, 1, TimeUnit.DAYS)) {
+            // Keep waiting
+        }
+    }
+
+    /**
+     * Takes the next command that may be sent now. Called by the link thread only.
+     *
+     * @param wait
+     *            receives the time in nanoseconds until a queued command may be sent, or Long.MAX_VALUE if there is
+     *            none
+     */
+    private PreparedCommand next(long now, long[] wait) {
+        PreparedCommand pc = signals.poll();
+        if (pc != null) {
+            size.decrementAndGet();
+            return pc;
+        }
+        wait[0] = Long.MAX_VALUE;
+        for (PriorityClass c : classes) {
+            Entry e = c.queue.peek();
+            if (e == null) {
+                continue;
+            }
+            long w = c.nanosUntilToken(now);
+            if (w > 0) {
+                wait[0] = Math.min(wait[0], w);
+                continue;
+            }
+            c.queue.poll();
+            c.takeToken();
+            c.depth.decrementAndGet();
+            size.decrementAndGet();
+            c.waitTime.record(now - e.queuedNanos);
+            c.sentCount.increment();
+            return e.pc;
+        }
+        return null;
+    }
+
+    @Override
+    public PreparedCommand poll() {
+        return next(System.nanoTime(), new long[1]);
+    }
+
+    @Override
+    public PreparedCommand poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long[] wait = new long[1];
+        waiter = Thread.currentThread();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                PreparedCommand pc = next(now, wait);
+                if (pc != null) {
+                    return pc;
+                }
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, Math.min(remaining, wait[0]));
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    @Override
+    public PreparedCommand take() throws InterruptedException {
+        PreparedCommand pc;
+        do {
+            pc = poll(1, TimeUnit.DAYS);
+        } while (pc == null);
+        return pc;
+    }
+
+    @Override
+    public PreparedCommand peek() {
+        PreparedCommand pc = signals.peek();
+        if (pc != null) {
+            return pc;
+        }
+        for (PriorityClass c : classes) {
+            Entry e = c.queue.peek();
+            if (e != null) {
+                return e.pc;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int drainTo(Collection<? super PreparedCommand> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes the queued commands in priority order, regardless of the pacing.
+     */
+    @Override
+    public int drainTo(Collection<? super PreparedCommand> collection, int maxElements) {
+        int n = 0;
+        PreparedCommand pc;
+        while (n < maxElements && (pc = signals.poll()) != null) {
+            size.decrementAndGet();
+            collection.add(pc);
+            n++;
+        }
+        for (PriorityClass c : classes) {
+            Entry e;
+            while (n < maxElements && (e = c.queue.poll()) != null) {
+                c.depth.decrementAndGet();
+                size.decrementAndGet();
+                collection.add(e.pc);
+                n++;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public void clear() {
+        drainTo(new ArrayList<>());
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size.get();
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return an iterator over a snapshot of the queued commands, in priority order
+     */
+    @Override
+    public Iterator<PreparedCommand> iterator() {
+        List<PreparedCommand> snapshot = new ArrayList<>(signals);
+        for (PriorityClass c : classes) {
+            for (Entry e : c.queue) {
+                snapshot.add(e.pc);
+            }
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+
+    public void setupSystemParameters(SystemParametersService sps, String namespace) {
+        String prefix = namespace + "/dispatch/";
+        spDepth = sps.createSystemParameter(prefix + "depth", Type.UINT32,
+                "Number of commands waiting to be sent, over all the classes");
+        for (PriorityClass c : classes) {
+            String classPrefix = prefix + c.name + "/";
+            String classText = " in class " + c.name;
+            c.spDepth = sps.createSystemParameter(classPrefix + "depth", Type.UINT32,
+                    "Number of commands waiting to be sent" + classText);
+            c.spWaitP50 = sps.createSystemParameter(classPrefix + "wait/p50", Type.DOUBLE, MILLISECONDS,
+                    "50th percentile of the time spent in the queue" + classText + " since the previous collection");
+            c.spWaitP99 = sps.createSystemParameter(classPrefix + "wait/p99", Type.DOUBLE, MILLISECONDS,
+                    "99th percentile of the time spent in the queue" + classText + " since the previous collection");
+            c.spSendRate = sps.createSystemParameter(classPrefix + "sendRate", Type.DOUBLE, COMMANDS_PER_SECOND,
+                    "Number of commands sent per second" + classText + " since the previous collection");
+        }
+    }
+
+    public void collectSystemParameters(long time, List<ParameterValue> list) {
+        if (spDepth == null) {
+            return;
+        }
+        double elapsed = (lastCollectionTime == Long.MIN_VALUE) ? 0 : (time - lastCollectionTime) / 1000.0;
+        lastCollectionTime = time;
+
+        list.add(SystemParametersService.getUnsignedIntPV(spDepth, time, size.get()));
+        for (PriorityClass c : classes) {
+            long sent = c.sentCount.sum();
+            double sendRate = (elapsed > 0) ? (sent - c.lastSentCount) / elapsed : 0;
+            c.lastSentCount = sent;
+
+            list.add(SystemParametersService.getUnsignedIntPV(c.spDepth, time, c.depth.get()));
+            list.add(SystemParametersService.getPV(c.spSendRate, time, sendRate));
+            LatencyHistogram.Snapshot snapshot = c.waitTime.snapshotAndReset();
+            if (snapshot.getCount() > 0) {
+                list.add(SystemParametersService.getPV(c.spWaitP50, time, snapshot.getPercentile(0.5) / 1e6));
+                list.add(SystemParametersService.getPV(c.spWaitP99, time, snapshot.getPercentile(0.99) / 1e6));
+            }
+        }
+    }
+
+    /**
+     * @return the number of queued commands, in total and per class
+     */
+    public Map<String, Object> getExtraInfo() {
+        Map<String, Object> extra = new LinkedHashMap<>();
+        extra.put("Queued commands", size.get());
+        for (PriorityClass c : classes) {
+            extra.put("Queued " + c.name, c.depth.get());
+        }
+        return extra;
+    }
+
+    static class Entry {
+        final PreparedCommand pc;
+        final long queuedNanos;
+
+        Entry(PreparedCommand pc, long queuedNanos) {
+            this.pc = pc;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    /**
+     * Queue and token bucket of a priority class. The bucket is only used by the link thread.
+     */
+    static class PriorityClass {
+        final String name;
+        final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger depth = new AtomicInteger();
+        final LatencyHistogram waitTime = new LatencyHistogram();
+        final LongAdder sentCount = new LongAdder();
+
+        // Tokens per nanosecond, 0 if the class is not paced
+        final double rate;
+        final double burst;
+        double tokens;
+        long lastRefill;
+
+        // Only accessed by the collecting thread
+        long lastSentCount;
+        Parameter spDepth;
+        Parameter spWaitP50;
+        Parameter spWaitP99;
+        Parameter spSendRate;
+
+        PriorityClass(String name, double ratePerSecond, int burst) {
+            if (ratePerSecond < 0 || burst < 1) {
+                throw new ConfigurationException("Invalid rate or burst for dispatch class " + name);
+            }
+            this.name = name;
+            this.rate = ratePerSecond / 1e9;
+            this.burst = burst;
+            this.tokens = burst;
+            this.lastRefill = System.nanoTime();
+        }
+
+        long nanosUntilToken(long now) {
+            if (rate == 0) {
+                return 0;
+            }
+            tokens = Math.min(burst, tokens + (now - lastRefill) * rate);
+            lastRefill = now;
+            return (tokens >= 1) ? 0 : (long) Math.ceil((1 - tokens) / rate);
+        }
+
+        void takeToken() {
+            if (rate != 0) {
+                tokens -= 1;
+            }
+        }
+    }
+}
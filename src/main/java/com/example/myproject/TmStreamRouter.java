@@ -0,0 +1,219 @@
+package com.example.myproject;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.yamcs.ConfigurationException;
+import org.yamcs.StandardTupleDefinitions;
+import org.yamcs.TmPacket;
+import org.yamcs.YConfiguration;
+import org.yamcs.logging.Log;
+import org.yamcs.tctm.TmSink;
+import org.yamcs.time.Instant;
+import org.yamcs.xtce.SequenceContainer;
+import org.yamcs.yarch.Stream;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.YarchDatabase;
+import org.yamcs.yarch.YarchDatabaseInstance;
+
+/**
+ * Sends the packets of selected APIDs to other TM streams than the one of the link.
+ * <p>
+ * Yamcs processes a tuple in the thread that emits it, so each of these streams is fed by its own thread through a
+ * bounded queue. The processors attached to different streams then decode in parallel. All the packets of an APID go
+ * to the same stream, in the order they were received. When a queue is full, the link thread waits for it. When the
+ * router is stopped, the packets still in the queues are emitted before the threads end.
+ * <p>
+ * Packets of the other APIDs, as well as invalid packets, are passed to the default sink of the link.
+ */
+public class TmStreamRouter implements TmSink {
+
+    private static final int NO_SHARD = -1;
+    // How long stop() waits for a thread to empty its queue
+    private static final long STOP_TIMEOUT_MILLIS = 10_000;
+
+    private final String linkName;
+    private final Log log;
+    private final Shard[] shards;
+    // Index in shards for each APID, or NO_SHARD
+    private final int[] shardByApid = new int[ApidSeqTracker.NUM_APIDS];
+
+    private volatile TmSink defaultSink;
+    private volatile boolean running;
+    // Packets passed to the default sink because the link thread was interrupted while waiting for a full queue
+    private final LongAdder rerouted = new LongAdder();
+
+    /**
+     * @param configs
+     *            one entry per stream, with the keys {@code stream} and {@code apids}. APIDs are given either as
+     *            numbers or as ranges such as {@code "100-199"}.
+     */
+    public TmStreamRouter(String yamcsInstance, String linkName, List<YConfiguration> configs, int queueSize) {
+        this.linkName = linkName;
+        this.log = new Log(getClass(), yamcsInstance);
+        Arrays.fill(shardByApid, NO_SHARD);
+
+        YarchDatabaseInstance ydb = YarchDatabase.getInstance(yamcsInstance);
+        shards = new Shard[configs.size()];
+        for (int i = 0; i < shards.length; i++) {
+            YConfiguration config = configs.get(i);
+            String streamName = config.getString("stream");
+            Stream stream = ydb.getStream(streamName);
+            if (stream == null) {
+                throw new ConfigurationException("Cannot find stream '" + streamName + "'");
+            }
+            shards[i] = new Shard(stream, queueSize);
+            for (Object o : config.getList("apids")) {
+                addApids(o, i);
+            }
+        }
+    }
+
+    private void addApids(Object o, int shardIdx) {
+        int first, last;
+        if (o instanceof Integer) {
+            first = last = (Integer) o;
+        } else {
+            String[] range = o.toString().split("-");
+            try {
+                first = Integer.parseInt(range[0].trim());
+                last = (range.length == 2) ? Integer.parseInt(range[1].trim()) : first;
+            } catch (NumberFormatException e) {
+                throw new ConfigurationException("Invalid APID range '" + o + "'");
+            }
+            if (range.length > 2) {
+                throw new ConfigurationException("Invalid APID range '" + o + "'");
+            }
+        }
+        if (first < 0 || last >= ApidSeqTracker.NUM_APIDS || first > last) {
+            throw new ConfigurationException("Invalid APID range '" + o + "'");
+        }
+        for (int apid = first; apid <= last; apid++) {
+            if (shardByApid[apid] != NO_SHARD && shardByApid[apid] != shardIdx) {
+                throw new ConfigurationException("APID " + apid + " is assigned to more than one stream");
+            }
+            shardByApid[apid] = shardIdx;
+        }
+    }
+
+    public void setDefaultSink(TmSink defaultSink) {
+        this.defaultSink = defaultSink;
+    }
+
+    public void start() {
+        running = true;
+        for (Shard shard : shards) {
+            String threadName = getClass().getSimpleName() + "-" + linkName + "-" + shard.stream.getName();
+            shard.thread = new Thread(shard, threadName);
+            shard.thread.setDaemon(true);
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * Stops the threads once they have emitted the packets left in their queues. To be called after the link has
+     * stopped passing packets.
+     */
+    public void stop() {
+        running = false;
+        for (Shard shard : shards) {
+            Thread thread = shard.thread;
+            if (thread == null) {
+                continue;
+            }
+            try {
+                thread.join(STOP_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                log.warn("Stream {} still has {} packets queued, stopping anyway", shard.stream.getName(),
+                        shard.queue.size());
+                thread.interrupt();
+            }
+            shard.thread = null;
+        }
+    }
+
+    /**
+     * @return the number of packets passed to the default sink instead of their stream because the link thread was
+     *         interrupted while waiting for a full queue
+     */
+    public long getReroutedCount() {
+        return rerouted.sum();
+    }
+
+    @Override
+    public void processPacket(TmPacket packet) {
+        byte[] bytes = packet.getPacket();
+        int shardIdx = bytes.length < CcsdsHeader.PRIMARY_HEADER_LENGTH || packet.isInvalid() ? NO_SHARD
+                : shardByApid[CcsdsHeader.apid(bytes)];
+        if (shardIdx == NO_SHARD) {
+            defaultSink.processPacket(packet);
+            return;
+        }
+        Shard shard = shards[shardIdx];
+        try {
+            shard.queue.put(toTuple(packet, linkName));
+        } catch (InterruptedException e) {
+            // Rather than losing the packet, emit it on the link stream; the link thread will see the interrupt
+            Thread.currentThread().interrupt();
+            rerouted.increment();
+            log.warn("Interrupted while waiting for stream {}, packet emitted on the link stream instead",
+                    shard.stream.getName());
+            defaultSink.processPacket(packet);
+        }
+    }
+
+    /**
+     * Creates the same tuple as the one emitted by Yamcs on the stream of a link.
+     */
+    static Tuple toTuple(TmPacket packet, String linkName) {
+        Instant ertime = packet.getEarthReceptionTime();
+        SequenceContainer rootContainer = packet.getRootContainer();
+        return new Tuple(StandardTupleDefinitions.TM, new Object[] {
+                packet.getGenerationTime(),
+                packet.getSeqCount(),
+                packet.getReceptionTime(),
+                packet.getStatus(),
+                packet.getPacket(),
+                ertime == Instant.INVALID_INSTANT ? null : ertime,
+                packet.getObt() == Long.MIN_VALUE ? null : packet.getObt(),
+                linkName,
+                rootContainer == null ? null : rootContainer.getQualifiedName() });
+    }
+
+    private class Shard implements Runnable {
+        final Stream stream;
+        final BlockingQueue<Tuple> queue;
+        volatile Thread thread;
+
+        Shard(Stream stream, int queueSize) {
+            this.stream = stream;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    Tuple tuple = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (tuple != null) {
+                        stream.emitTuple(tuple);
+                    } else if (!running) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    log.warn("Error emitting packet on stream {}", stream.getName(), e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.myproject;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ApidFilterTest {
+
+    @Test
+    public void testAcceptAll() {
+        ApidFilter filter = new ApidFilter(null, null, false);
+        for (int apid = 0; apid < ApidSeqTracker.NUM_APIDS; apid++) {
+            assertTrue(filter.accepts(apid));
+        }
+    }
+
+    @Test
+    public void testAllow() {
+        ApidFilter filter = new ApidFilter(List.of(0, 63, 64, 100, 2046), null, true);
+        for (int apid = 0; apid < ApidSeqTracker.NUM_APIDS; apid++) {
+            boolean allowed = apid == 0 || apid == 63 || apid == 64 || apid == 100 || apid == 2046;
+            assertTrue(filter.accepts(apid) == allowed, "APID " + apid);
+        }
+    }
+
+    @Test
+    public void testDeny() {
+        ApidFilter filter = new ApidFilter(null, List.of(1, 127, 128), false);
+        assertTrue(filter.accepts(0));
+        assertFalse(filter.accepts(1));
+        assertTrue(filter.accepts(126));
+        assertFalse(filter.accepts(127));
+        assertFalse(filter.accepts(128));
+        assertTrue(filter.accepts(129));
+        assertTrue(filter.accepts(ApidFilter.IDLE_APID));
+
+        // deny takes precedence over allow
+        filter = new ApidFilter(List.of(5, 6), List.of(6), false);
+        assertTrue(filter.accepts(5));
+        assertFalse(filter.accepts(6));
+    }
+
+    @Test
+    public void testIdle() {
+        assertFalse(new ApidFilter(null, null, true).accepts(ApidFilter.IDLE_APID));
+        assertTrue(new ApidFilter(null, null, true).accepts(ApidFilter.IDLE_APID - 1));
+        // dropping idle packets overrides the allow list
+        assertFalse(new ApidFilter(List.of(ApidFilter.IDLE_APID), null, true).accepts(ApidFilter.IDLE_APID));
+        assertTrue(new ApidFilter(List.of(ApidFilter.IDLE_APID), null, false).accepts(ApidFilter.IDLE_APID));
+    }
+
+    @Test
+    public void testOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new ApidFilter(List.of(-1), null, true));
+        assertThrows(IllegalArgumentException.class, () -> new ApidFilter(List.of(2048), null, true));
+        assertThrows(IllegalArgumentException.class, () -> new ApidFilter(null, List.of(2048), true));
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.myproject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ApidSeqTrackerTest {
+
+    @TempDir
+    Path tmpDir;
+
+    @Test
+    public void testUpdate() {
+        ApidSeqTracker tracker = new ApidSeqTracker();
+        assertEquals(ApidSeqTracker.UNSEEN, tracker.get(100));
+        assertEquals(ApidSeqTracker.UNSEEN, tracker.update(100, 5));
+        assertEquals(5, tracker.update(100, 6));
+        assertEquals(6, tracker.get(100));
+
+        // APIDs are independent, including the last one
+        assertEquals(ApidSeqTracker.UNSEEN, tracker.update(2047, 0));
+        assertEquals(6, tracker.get(100));
+    }
+
+    @Test
+    public void testNextWrapsAround() {
+        ApidSeqTracker tracker = new ApidSeqTracker();
+        assertEquals(1, tracker.next(7));
+        assertEquals(2, tracker.next(7));
+        tracker.update(7, 0x3FFF);
+        assertEquals(0, tracker.next(7));
+    }
+
+    @Test
+    public void testNextContinuesAfterReopen() throws IOException {
+        Path file = tmpDir.resolve("tc-seqcounts");
+        ApidSeqTracker tracker = new ApidSeqTracker(file);
+        for (int i = 0; i < 0x4000; i++) {
+            tracker.next(101);
+        }
+        assertEquals(0, tracker.get(101));
+        assertEquals(1, tracker.next(102));
+
+        // Without force: the mapping is shared with the next instance, as after a crash of Yamcs
+        ApidSeqTracker reopened = new ApidSeqTracker(file);
+        assertEquals(1, reopened.next(101));
+        assertEquals(2, reopened.next(102));
+        assertEquals(1, reopened.next(103));
+    }
+
+    @Test
+    public void testConcurrentNext() throws Exception {
+        Path file = tmpDir.resolve("tc-seqcounts");
+        ApidSeqTracker tracker = new ApidSeqTracker(file);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    tracker.next(101);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        // No count was given out twice, and the file holds the last one
+        assertEquals(40_000 & 0x3FFF, tracker.get(101));
+        assertEquals(40_000 & 0x3FFF, new ApidSeqTracker(file).get(101));
+    }
+
+    @Test
+    public void testPersistence() throws IOException {
+        Path file = tmpDir.resolve("sub/seqcounts");
+        ApidSeqTracker tracker = new ApidSeqTracker(file);
+        tracker.update(3, 1234);
+        tracker.next(4);
+        tracker.force();
+
+        ApidSeqTracker reloaded = new ApidSeqTracker(file);
+        assertEquals(1234, reloaded.get(3));
+        assertEquals(1, reloaded.get(4));
+        assertEquals(ApidSeqTracker.UNSEEN, reloaded.get(5));
+    }
+
+    @Test
+    public void testInvalidFileIsReset() throws IOException {
+        Path file = tmpDir.resolve("seqcounts");
+        Files.write(file, new byte[] { 1, 2, 3 });
+
+        ApidSeqTracker tracker = new ApidSeqTracker(file);
+        for (int apid = 0; apid < ApidSeqTracker.NUM_APIDS; apid++) {
+            assertEquals(ApidSeqTracker.UNSEEN, tracker.get(apid));
+        }
+    }
+}
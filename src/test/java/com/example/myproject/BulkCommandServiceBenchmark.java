@@ -0,0 +1,86 @@
+package com.example.myproject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yamcs.ProcessorConfig;
+import org.yamcs.YConfiguration;
+import org.yamcs.cmdhistory.Attribute;
+import org.yamcs.mdb.Mdb;
+import org.yamcs.mdb.ProcessorData;
+import org.yamcs.security.User;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Commands per second of {@link BulkCommandService} for a stack of 1000 commands, from the JSON request to the
+ * commanding manager: parsing, parallel encoding, and sending in order with at most maxInFlight commands in flight.
+ * The commanding manager is replaced by the one of {@link BulkCommandServiceTest}, whose link sends each command as
+ * soon as it is passed on, so that only the cost of the service is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkCommandServiceBenchmark {
+
+    private static final int STACK_SIZE = 1000;
+
+    private BulkCommandService service;
+    private User user;
+    private String body;
+
+    @Setup
+    public void setup() throws Exception {
+        TimeEncoding.setUp();
+        Mdb mdb = BulkCommandServiceTest.loadMdb();
+        CommandTemplateCache templates = new CommandTemplateCache(new ProcessorData("benchmark", mdb,
+                new ProcessorConfig()));
+        templates.compileAll();
+
+        BulkCommandServiceTest.FakeCommander commander = new BulkCommandServiceTest.FakeCommander();
+        commander.link = pc -> {
+            commander.sent.clear();
+            service.updatedCommand(pc.getCommandId(), 0, List.of(new Attribute(BulkCommandServiceTest.SENT_STATUS,
+                    ValueUtility.getStringValue("OK"))));
+        };
+        service = BulkCommandService.standalone(YConfiguration.wrap(Map.of()), mdb, templates, commander);
+        user = new User("benchmark", null);
+        user.setSuperuser(true);
+
+        JsonObject[] commands = new JsonObject[STACK_SIZE];
+        for (int i = 0; i < STACK_SIZE; i++) {
+            commands[i] = (i % 2 == 0) ? BulkCommandServiceTest.command("/myproject/SwitchVoltageOn", 1 + i % 3)
+                    : BulkCommandServiceTest.command("/myproject/Reboot", null);
+        }
+        body = BulkCommandServiceTest.stack(commands);
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutDownExecutors();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STACK_SIZE)
+    public BulkCommandService.Response stack() {
+        return service.process(user, "bulk@benchmark", body);
+    }
+}
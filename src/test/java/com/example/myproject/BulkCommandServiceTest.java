@@ -0,0 +1,285 @@
+package com.example.myproject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.yamcs.ProcessorConfig;
+import org.yamcs.YConfiguration;
+import org.yamcs.cmdhistory.Attribute;
+import org.yamcs.cmdhistory.CommandHistoryPublisher;
+import org.yamcs.commanding.PreparedCommand;
+import org.yamcs.mdb.Mdb;
+import org.yamcs.mdb.MdbFactory;
+import org.yamcs.mdb.ProcessorData;
+import org.yamcs.protobuf.Commanding.CommandId;
+import org.yamcs.security.User;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.xtce.MetaCommand;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+public class BulkCommandServiceTest {
+
+    static final String SENT_STATUS = CommandHistoryPublisher.AcknowledgeSent_KEY
+            + CommandHistoryPublisher.SUFFIX_STATUS;
+
+    private static Mdb mdb;
+    private static CommandTemplateCache templates;
+    private static User user;
+
+    private final FakeCommander commander = new FakeCommander();
+    private BulkCommandService service;
+    private ExecutorService link;
+
+    @BeforeAll
+    public static void setUpMdb() {
+        TimeEncoding.setUp();
+        mdb = loadMdb();
+        templates = new CommandTemplateCache(new ProcessorData("test", mdb, new ProcessorConfig()));
+        user = new User("test", null);
+        user.setSuperuser(true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (service != null) {
+            service.shutDownExecutors();
+        }
+        if (link != null) {
+            link.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMalformedRequests() throws Exception {
+        service = service(8, 1000);
+        for (String body : List.of("{", "[]", "{}", "{\"commands\": []}", "{\"commands\": [{\"args\": {}}]}",
+                "{\"commands\": [{\"name\": 5}]}",
+                "{\"commands\": [{\"name\": \"/myproject/Reboot\", \"args\": [1]}]}")) {
+            BulkCommandService.Response response = service.process(user, "bulk@test", body);
+            assertEquals(HttpResponseStatus.BAD_REQUEST, response.status, body);
+            assertTrue(response.body.has("message"), body);
+        }
+        assertTrue(commander.sent.isEmpty());
+    }
+
+    @Test
+    public void testIndexedErrors() throws Exception {
+        service = service(8, 1000);
+        BulkCommandService.Response response = service.process(user, "bulk@test", stack(
+                command("/myproject/Reboot", null),
+                command("/myproject/Unknown", null),
+                command("/myproject/CCSDSPacket", null),
+                command("/myproject/SwitchVoltageOn", 7),
+                command("/myproject/SwitchVoltageOff", null)));
+
+        assertEquals(HttpResponseStatus.BAD_REQUEST, response.status);
+        JsonArray errors = response.body.getAsJsonArray("errors");
+        assertEquals(4, errors.size());
+        assertError(errors.get(0).getAsJsonObject(), 1, "/myproject/Unknown", "No such command");
+        assertError(errors.get(1).getAsJsonObject(), 2, "/myproject/CCSDSPacket", "Abstract command");
+        assertEquals(3, errors.get(2).getAsJsonObject().get("index").getAsInt());
+        assertEquals(4, errors.get(3).getAsJsonObject().get("index").getAsInt());
+        // Nothing is sent if any command is invalid
+        assertTrue(commander.sent.isEmpty());
+    }
+
+    @Test
+    public void testNoPrivilege() throws Exception {
+        service = service(8, 1000);
+        BulkCommandService.Response response = service.process(new User("guest", null), "bulk@test",
+                stack(command("/myproject/Reboot", null)));
+
+        assertEquals(HttpResponseStatus.BAD_REQUEST, response.status);
+        assertError(response.body.getAsJsonArray("errors").get(0).getAsJsonObject(), 0, "/myproject/Reboot",
+                "No privilege to send this command");
+    }
+
+    @Test
+    public void testSendsInOrder() throws Exception {
+        service = service(2, 1000);
+        commander.link = this::ack;
+        BulkCommandService.Response response = service.process(user, "bulk@10.0.0.1", stack(
+                command("/myproject/SwitchVoltageOn", 1),
+                command("/myproject/Reboot", null),
+                command("/myproject/SwitchVoltageOff", 3)));
+
+        assertEquals(HttpResponseStatus.OK, response.status);
+        assertEquals(3, response.body.get("sent").getAsInt());
+        assertEquals(0, response.body.get("failed").getAsInt());
+        assertFalse(response.body.has("message"));
+
+        assertEquals(List.of("/myproject/SwitchVoltageOn", "/myproject/Reboot", "/myproject/SwitchVoltageOff"),
+                commander.sent.stream().map(pc -> pc.getMetaCommand().getQualifiedName()).toList());
+        PreparedCommand pc = commander.sent.get(2);
+        assertEquals("bulk@10.0.0.1", pc.getCommandId().getOrigin());
+        assertEquals(commander.sent.get(1).getCommandId().getSequenceNumber() + 1,
+                pc.getCommandId().getSequenceNumber());
+        assertFalse(pc.isRaw());
+        assertEquals(3, pc.getArgAssignment().get(pc.getMetaCommand().getArgument("Battery")).getEngValue()
+                .getUint32Value());
+        assertEquals(0, service.getPendingCount());
+    }
+
+    @Test
+    public void testAbortOnAckTimeout() throws Exception {
+        // The link never sends anything
+        service = service(2, 100);
+        BulkCommandService.Response response = service.process(user, "bulk@test", stack(
+                command("/myproject/Reboot", null),
+                command("/myproject/Reboot", null),
+                command("/myproject/Reboot", null),
+                command("/myproject/Reboot", null)));
+
+        assertEquals(HttpResponseStatus.OK, response.status);
+        assertEquals(2, response.body.get("sent").getAsInt());
+        assertEquals("Aborted at command #2: no command sent by the link for 100 ms",
+                response.body.get("message").getAsString());
+        assertEquals(0, service.getPendingCount());
+    }
+
+    @Test
+    public void testInFlightPermitsReleased() throws Exception {
+        // The link sends the commands from its own thread, and fails one of them
+        service = service(2, 1000);
+        link = Executors.newSingleThreadExecutor();
+        commander.link = pc -> link.execute(() -> {
+            String status = (pc.getCommandId().getSequenceNumber() % 10 == 5) ? "NOK" : "OK";
+            service.updatedCommand(pc.getCommandId(), 0,
+                    List.of(new Attribute(SENT_STATUS, ValueUtility.getStringValue(status))));
+        });
+        JsonObject[] commands = new JsonObject[100];
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] = command("/myproject/Reboot", null);
+        }
+        BulkCommandService.Response response = service.process(user, "bulk@test", stack(commands));
+
+        assertEquals(HttpResponseStatus.OK, response.status);
+        assertEquals(100, response.body.get("sent").getAsInt());
+        assertEquals(10, response.body.get("failed").getAsInt());
+        assertFalse(response.body.has("message"));
+        assertEquals(0, service.getPendingCount());
+    }
+
+    @Test
+    public void testSendFailure() throws Exception {
+        service = service(2, 1000);
+        commander.link = pc -> {
+            if (commander.sent.size() == 2) {
+                throw new IllegalStateException("Queue full");
+            }
+            ack(pc);
+        };
+        BulkCommandService.Response response = service.process(user, "bulk@test", stack(
+                command("/myproject/Reboot", null),
+                command("/myproject/Reboot", null),
+                command("/myproject/Reboot", null)));
+
+        assertEquals(HttpResponseStatus.OK, response.status);
+        assertEquals(1, response.body.get("sent").getAsInt());
+        assertEquals("Aborted at command #1: java.lang.IllegalStateException: Queue full",
+                response.body.get("message").getAsString());
+        assertEquals(0, service.getPendingCount());
+    }
+
+    @Test
+    public void testUnexpectedError() throws Exception {
+        service = service(2, 1000);
+        commander.failBuild = true;
+        BulkCommandService.Response response = service.process(user, "bulk@test",
+                stack(command("/myproject/Reboot", null)));
+
+        assertEquals(HttpResponseStatus.INTERNAL_SERVER_ERROR, response.status);
+        assertEquals("java.lang.IllegalStateException: No processor", response.body.get("message").getAsString());
+    }
+
+    private void ack(PreparedCommand pc) {
+        service.updatedCommand(pc.getCommandId(), 0,
+                List.of(new Attribute(SENT_STATUS, ValueUtility.getStringValue("OK"))));
+    }
+
+    private BulkCommandService service(int maxInFlight, int ackTimeout) throws Exception {
+        return BulkCommandService.standalone(YConfiguration.wrap(Map.of("maxInFlight", maxInFlight,
+                "ackTimeout", ackTimeout, "encodingThreads", 2)), mdb, templates, commander);
+    }
+
+    private static void assertError(JsonObject error, int index, String name, String message) {
+        assertEquals(index, error.get("index").getAsInt());
+        assertEquals(name, error.get("name").getAsString());
+        assertEquals(message, error.get("message").getAsString());
+    }
+
+    static Mdb loadMdb() {
+        return MdbFactory.createInstance(List.of(YConfiguration.wrap(
+                Map.of("type", "xtce", "args", Map.of("file", "src/main/yamcs/mdb/xtce.xml")))), false, false);
+    }
+
+    static JsonObject command(String name, Integer battery) {
+        JsonObject command = new JsonObject();
+        command.addProperty("name", name);
+        if (battery != null) {
+            JsonObject args = new JsonObject();
+            args.addProperty("Battery", battery);
+            command.add("args", args);
+        }
+        return command;
+    }
+
+    static String stack(JsonObject... commands) {
+        JsonArray array = new JsonArray();
+        for (JsonObject command : commands) {
+            array.add(command);
+        }
+        JsonObject request = new JsonObject();
+        request.add("commands", array);
+        return request.toString();
+    }
+
+    /**
+     * Prepares the commands as the commanding manager does, and passes them to a link.
+     */
+    static class FakeCommander implements BulkCommandService.Commander {
+        final List<PreparedCommand> sent = new CopyOnWriteArrayList<>();
+        Consumer<PreparedCommand> link = pc -> {
+        };
+        boolean failBuild;
+
+        @Override
+        public PreparedCommand buildRawCommand(MetaCommand mc, byte[] binary, String origin, int seqNum,
+                User user) {
+            if (failBuild) {
+                throw new IllegalStateException("No processor");
+            }
+            CommandId cmdId = CommandId.newBuilder().setCommandName(mc.getQualifiedName()).setOrigin(origin)
+                    .setSequenceNumber(seqNum).setGenerationTime(0).build();
+            PreparedCommand pc = new PreparedCommand(cmdId);
+            pc.setMetaCommand(mc);
+            pc.setUnprocessedBinary(binary);
+            pc.setBinary(binary);
+            pc.setUsername(user.getName());
+            pc.setRaw(true);
+            return pc;
+        }
+
+        @Override
+        public void sendCommand(User user, PreparedCommand pc) {
+            sent.add(pc);
+            link.accept(pc);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.myproject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+public class CcsdsHeaderTest {
+
+    @Test
+    public void readsFields() {
+        byte[] bytes = TestPackets.packet(0x7FF, CcsdsHeader.SEQ_FLAGS_FIRST, 0x3FFF, new byte[10]);
+        bytes[0] |= 0x08;
+
+        int word = CcsdsHeader.apidSeqCount(bytes);
+        assertEquals(ByteBuffer.wrap(bytes).getInt(0), word);
+        assertEquals(0x7FF, CcsdsHeader.apid(word));
+        assertEquals(0x7FF, CcsdsHeader.apid(bytes));
+        assertEquals(CcsdsHeader.SEQ_FLAGS_FIRST, CcsdsHeader.seqFlags(word));
+        assertEquals(0x3FFF, CcsdsHeader.seqCount(word));
+        assertTrue(CcsdsHeader.hasSecondaryHeader(word));
+        assertEquals(16, CcsdsHeader.packetLength(bytes, 0));
+    }
+
+    @Test
+    public void readsAtOffset() {
+        byte[] datagram = TestPackets.concat(TestPackets.packet(100, 1, new byte[3]),
+                TestPackets.packet(101, 2, new byte[40000]));
+
+        int word = CcsdsHeader.apidSeqCount(datagram, 9);
+        assertEquals(101, CcsdsHeader.apid(word));
+        assertEquals(2, CcsdsHeader.seqCount(word));
+        assertFalse(CcsdsHeader.hasSecondaryHeader(word));
+        // Packet lengths above 32767 are not sign extended
+        assertEquals(40006, CcsdsHeader.packetLength(datagram, 9));
+    }
+
+    @Test
+    public void writesFields() {
+        byte[] bytes = TestPackets.packet(100, CcsdsHeader.SEQ_FLAGS_LAST, 5, new byte[10]);
+
+        CcsdsHeader.setSeqCount(bytes, 0x2ABC);
+        CcsdsHeader.setPacketLength(bytes, 12);
+        int word = CcsdsHeader.apidSeqCount(bytes);
+        assertEquals(0x2ABC, CcsdsHeader.seqCount(word));
+        assertEquals(CcsdsHeader.SEQ_FLAGS_LAST, CcsdsHeader.seqFlags(word));
+        assertEquals(12, CcsdsHeader.packetLength(bytes, 0));
+
+        CcsdsHeader.setSeqFlags(bytes, CcsdsHeader.SEQ_FLAGS_UNSEGMENTED);
+        word = CcsdsHeader.apidSeqCount(bytes);
+        assertEquals(CcsdsHeader.SEQ_FLAGS_UNSEGMENTED, CcsdsHeader.seqFlags(word));
+        assertEquals(0x2ABC, CcsdsHeader.seqCount(word));
+        assertEquals(100, CcsdsHeader.apid(word));
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.myproject;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yamcs.StandardTupleDefinitions;
+import org.yamcs.YConfiguration;
+import org.yamcs.archive.CommandHistoryRecorder;
+import org.yamcs.cmdhistory.StreamCommandHistoryPublisher;
+import org.yamcs.commanding.PreparedCommand;
+import org.yamcs.protobuf.Commanding.CommandId;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.yarch.YarchDatabase;
+import org.yamcs.yarch.YarchDatabaseInstance;
+
+/**
+ * Cost per command of publishing the sequence count and the binary of a command, as MyCommandPostprocessor does: one
+ * publish per attribute, or one {@link CommandHistoryBatch}. The command history is recorded by the Yamcs
+ * CommandHistoryRecorder, in a RocksDB database in a temporary directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandHistoryBatchBenchmark {
+
+    private static final String INSTANCE = "benchmark";
+
+    private final byte[] binary = new byte[16];
+    private StreamCommandHistoryPublisher publisher;
+    private int seq;
+
+    @Setup
+    public void setup() throws Exception {
+        String dataDir = Files.createTempDirectory("cmdhist").toString();
+        YConfiguration.setResolver(name -> new ByteArrayInputStream(
+                ("dataDir: " + dataDir + "\n").getBytes(StandardCharsets.UTF_8)));
+        TimeEncoding.setUp();
+
+        YarchDatabaseInstance ydb = YarchDatabase.getInstance(INSTANCE);
+        ydb.execute("create stream " + StreamCommandHistoryPublisher.REALTIME_CMDHIST_STREAM_NAME + " "
+                + StandardTupleDefinitions.TC.getStringDefinition());
+        // Not stopped at the end: it needs the stream configuration of a full instance for that
+        CommandHistoryRecorder recorder = new CommandHistoryRecorder();
+        recorder.init(INSTANCE, "cmdhist", YConfiguration.wrap(
+                Map.of("streams", List.of(StreamCommandHistoryPublisher.REALTIME_CMDHIST_STREAM_NAME))));
+        recorder.startAsync().awaitRunning();
+        publisher = new StreamCommandHistoryPublisher(INSTANCE);
+    }
+
+    @Benchmark
+    public void separate() {
+        CommandId cmdId = nextCommandId();
+        publisher.publish(cmdId, "ccsds-seqcount", seq);
+        publisher.publish(cmdId, PreparedCommand.CNAME_BINARY, binary);
+    }
+
+    @Benchmark
+    public void batched() {
+        new CommandHistoryBatch(publisher, nextCommandId())
+                .add("ccsds-seqcount", seq)
+                .add(PreparedCommand.CNAME_BINARY, binary)
+                .publish();
+    }
+
+    private CommandId nextCommandId() {
+        seq++;
+        return CommandId.newBuilder().setGenerationTime(seq).setOrigin("benchmark").setSequenceNumber(seq)
+                .setCommandName("/myproject/SwitchVoltageOn").build();
+    }
+}
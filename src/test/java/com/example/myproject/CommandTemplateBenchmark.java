@@ -0,0 +1,79 @@
+package com.example.myproject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yamcs.ErrorInCommand;
+import org.yamcs.ProcessorConfig;
+import org.yamcs.YConfiguration;
+import org.yamcs.mdb.Mdb;
+import org.yamcs.mdb.MdbFactory;
+import org.yamcs.mdb.MetaCommandProcessor;
+import org.yamcs.mdb.MetaCommandProcessor.CommandBuildResult;
+import org.yamcs.mdb.ProcessorData;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.xtce.MetaCommand;
+
+/**
+ * Time to encode the commands of the example MDB with their {@link CommandTemplate}, and with the XTCE encoding of
+ * Yamcs. The arguments are the sample values used to check the templates. The encoding time was 30-75 us with XTCE
+ * and 1-3 us with the template in the log of the first compilation, which includes the warm-up of the JIT.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandTemplateBenchmark {
+
+    @Param({ "Reboot", "SwitchVoltageOn" })
+    public String command;
+
+    private ProcessorData pdata;
+    private MetaCommand mc;
+    private CommandTemplate template;
+    private CommandTemplateCache cache;
+    private Map<String, Object> args;
+
+    @Setup
+    public void setup() throws ErrorInCommand {
+        TimeEncoding.setUp();
+        Mdb mdb = MdbFactory.createInstance(List.of(YConfiguration.wrap(
+                Map.of("type", "xtce", "args", Map.of("file", "src/main/yamcs/mdb/xtce.xml")))), false, false);
+        pdata = new ProcessorData("benchmark", mdb, new ProcessorConfig());
+        mc = mdb.getMetaCommand("/myproject/" + command);
+        template = CommandTemplate.compile(pdata, mc);
+        args = template.getSampleArguments();
+        cache = new CommandTemplateCache(pdata);
+        cache.compileAll();
+    }
+
+    @Benchmark
+    public byte[] template() {
+        return template.encode(args);
+    }
+
+    // As used by BulkCommandService: the template with the argument values for the command history
+    @Benchmark
+    public CommandBuildResult templateCache() throws ErrorInCommand {
+        return cache.buildCommand(mc, args);
+    }
+
+    @Benchmark
+    public CommandBuildResult xtce() throws ErrorInCommand {
+        return MetaCommandProcessor.buildCommand(pdata, mc, args);
+    }
+}
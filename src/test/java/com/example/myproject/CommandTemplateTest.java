@@ -0,0 +1,238 @@
+package com.example.myproject;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.yamcs.ErrorInCommand;
+import org.yamcs.ProcessorConfig;
+import org.yamcs.YConfiguration;
+import org.yamcs.commanding.ArgumentValue;
+import org.yamcs.mdb.Mdb;
+import org.yamcs.mdb.MdbFactory;
+import org.yamcs.mdb.MetaCommandProcessor;
+import org.yamcs.mdb.MetaCommandProcessor.CommandBuildResult;
+import org.yamcs.mdb.ProcessorData;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.xtce.Argument;
+import org.yamcs.xtce.MetaCommand;
+import org.yamcs.xtce.ValueEnumeration;
+
+public class CommandTemplateTest {
+
+    private static ProcessorData examplePdata;
+    private static ProcessorData unalignedPdata;
+
+    @BeforeAll
+    public static void setUpMdb() {
+        TimeEncoding.setUp();
+        examplePdata = new ProcessorData("test", BulkCommandServiceTest.loadMdb(), new ProcessorConfig());
+        unalignedPdata = new ProcessorData("test", loadMdb("src/test/resources/mdb/command-templates.xml"),
+                new ProcessorConfig());
+    }
+
+    @Test
+    public void testPutBits() {
+        Random random = new Random(1);
+        for (int offset = 0; offset < 24; offset++) {
+            for (int size = 1; size <= 63; size++) {
+                for (int i = 0; i < 4; i++) {
+                    byte[] bytes = new byte[11];
+                    random.nextBytes(bytes);
+                    byte[] expected = bytes.clone();
+                    long value = random.nextLong();
+                    putBitsOneByOne(expected, offset, size, value);
+                    CommandTemplate.putBits(bytes, offset, size, value);
+                    assertArrayEquals(expected, bytes, "offset " + offset + ", size " + size);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPutBitsKeepsNeighbours() {
+        byte[] bytes = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF };
+        CommandTemplate.putBits(bytes, 5, 11, 0);
+        assertArrayEquals(new byte[] { (byte) 0xF8, 0, (byte) 0xFF }, bytes);
+
+        bytes = new byte[3];
+        CommandTemplate.putBits(bytes, 3, 13, 0x1ABC);
+        assertArrayEquals(new byte[] { 0x1A, (byte) 0xBC, 0 }, bytes);
+    }
+
+    @Test
+    public void testExampleCommands() throws Exception {
+        int compiled = 0;
+        for (MetaCommand mc : examplePdata.getMdb().getMetaCommands()) {
+            if (mc.isAbstract()) {
+                continue;
+            }
+            CommandTemplate ct = CommandTemplate.compile(examplePdata, mc);
+            assertNotNull(ct, mc.getQualifiedName());
+            checkEdgeValues(examplePdata, ct);
+            compiled++;
+        }
+        assertEquals(3, compiled);
+    }
+
+    @Test
+    public void testUnalignedArguments() throws Exception {
+        MetaCommand mc = unalignedPdata.getMdb().getMetaCommand("/templates/Unaligned");
+        CommandTemplate ct = CommandTemplate.compile(unalignedPdata, mc);
+        assertNotNull(ct);
+        assertEquals(5, ct.getArgumentCount());
+        checkEdgeValues(unalignedPdata, ct);
+        checkRandomValues(unalignedPdata, ct);
+    }
+
+    @Test
+    public void testInheritedCommand() throws Exception {
+        MetaCommand mc = unalignedPdata.getMdb().getMetaCommand("/templates/Inherited");
+        CommandTemplate ct = CommandTemplate.compile(unalignedPdata, mc);
+        assertNotNull(ct);
+        // Mode is assigned by the definition
+        assertFalse(ct.getSampleArguments().containsKey("Mode"));
+        assertEquals(5, ct.getArgumentCount());
+        checkEdgeValues(unalignedPdata, ct);
+        checkRandomValues(unalignedPdata, ct);
+    }
+
+    @Test
+    public void testDefaultValue() throws Exception {
+        MetaCommand mc = unalignedPdata.getMdb().getMetaCommand("/templates/Unaligned");
+        CommandTemplate ct = CommandTemplate.compile(unalignedPdata, mc);
+        Map<String, Object> args = ct.getSampleArguments();
+        args.remove("Retries");
+        byte[] binary = ct.encode(args);
+        assertArrayEquals(MetaCommandProcessor.buildCommand(unalignedPdata, mc, args).getCmdPacket(), binary);
+        // Retries at bits 67-73
+        assertEquals(42, (((binary[8] & 0xFF) << 8 | (binary[9] & 0xFF)) >> 6) & 0x7F);
+
+        // no default for the others
+        args.remove("Level");
+        assertNull(ct.encode(args));
+    }
+
+    @Test
+    public void testInvalidArguments() throws Exception {
+        MetaCommand mc = unalignedPdata.getMdb().getMetaCommand("/templates/Unaligned");
+        CommandTemplate ct = CommandTemplate.compile(unalignedPdata, mc);
+
+        List<Map<String, Object>> invalid = new ArrayList<>();
+        invalid.add(with(ct, "Mode", "STANDBY"));
+        invalid.add(with(ct, "Mode", 5));
+        invalid.add(with(ct, "Level", 9));
+        invalid.add(with(ct, "Level", 6001));
+        invalid.add(with(ct, "Level", "ten"));
+        invalid.add(with(ct, "Level", 10.5));
+        invalid.add(with(ct, "Unknown", 1));
+        for (Map<String, Object> args : invalid) {
+            assertNull(ct.encode(args), args.toString());
+        }
+        // the XTCE encoding reports the range errors
+        assertThrows(ErrorInCommand.class,
+                () -> MetaCommandProcessor.buildCommand(unalignedPdata, mc, with(ct, "Level", 9)));
+        assertThrows(ErrorInCommand.class,
+                () -> MetaCommandProcessor.buildCommand(unalignedPdata, mc, with(ct, "Level", 6001)));
+        assertThrows(ErrorInCommand.class,
+                () -> MetaCommandProcessor.buildCommand(unalignedPdata, mc, with(ct, "Mode", "STANDBY")));
+    }
+
+    /**
+     * Encodes each argument at the ends of its range and next to them, with the others at both ends of theirs.
+     */
+    private static void checkEdgeValues(ProcessorData pdata, CommandTemplate ct) throws ErrorInCommand {
+        for (boolean low : new boolean[] { true, false }) {
+            for (CommandTemplate.Field f : ct.getFields()) {
+                for (Object value : edgeValues(f)) {
+                    Map<String, Object> args = new HashMap<>();
+                    for (CommandTemplate.Field other : ct.getFields()) {
+                        List<Object> values = edgeValues(other);
+                        args.put(other.argument.getName(), values.get(low ? 0 : values.size() - 1));
+                    }
+                    args.put(f.argument.getName(), value);
+                    checkEncoding(pdata, ct, args);
+                }
+            }
+        }
+    }
+
+    private static void checkRandomValues(ProcessorData pdata, CommandTemplate ct) throws ErrorInCommand {
+        Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            Map<String, Object> args = new HashMap<>();
+            for (CommandTemplate.Field f : ct.getFields()) {
+                if (f.enumType != null) {
+                    List<ValueEnumeration> list = f.enumType.getValueEnumerationList();
+                    args.put(f.argument.getName(), list.get(random.nextInt(list.size())).getLabel());
+                } else {
+                    long value = f.min + (long) (random.nextDouble() * (f.max - f.min + 1));
+                    args.put(f.argument.getName(), Math.min(value, f.max));
+                }
+            }
+            checkEncoding(pdata, ct, args);
+        }
+    }
+
+    private static void checkEncoding(ProcessorData pdata, CommandTemplate ct, Map<String, Object> args)
+            throws ErrorInCommand {
+        CommandBuildResult expected = MetaCommandProcessor.buildCommand(pdata, ct.getMetaCommand(), args);
+        Map<Argument, ArgumentValue> values = new HashMap<>();
+        byte[] binary = ct.encode(args, values);
+        assertArrayEquals(expected.getCmdPacket(), binary, args.toString());
+        for (CommandTemplate.Field f : ct.getFields()) {
+            assertEquals(expected.getArgs().get(f.argument).getEngValue(), values.get(f.argument).getEngValue(),
+                    args.toString());
+        }
+    }
+
+    private static List<Object> edgeValues(CommandTemplate.Field f) {
+        List<Object> values = new ArrayList<>();
+        if (f.enumType != null) {
+            for (ValueEnumeration ve : f.enumType.getValueEnumerationList()) {
+                values.add(ve.getLabel());
+            }
+        } else {
+            for (long v : new long[] { f.min, f.min + 1, -1, 0, 1, f.max - 1, f.max }) {
+                if (v >= f.min && v <= f.max && !values.contains(v)) {
+                    values.add(v);
+                }
+            }
+        }
+        return values;
+    }
+
+    private static Map<String, Object> with(CommandTemplate ct, String name, Object value) {
+        Map<String, Object> args = ct.getSampleArguments();
+        args.put(name, value);
+        return args;
+    }
+
+    private static void putBitsOneByOne(byte[] bytes, int offset, int size, long value) {
+        for (int i = 0; i < size; i++) {
+            int bit = offset + i;
+            int mask = 0x80 >>> (bit & 7);
+            if (((value >>> (size - 1 - i)) & 1) != 0) {
+                bytes[bit >>> 3] |= mask;
+            } else {
+                bytes[bit >>> 3] &= ~mask;
+            }
+        }
+    }
+
+    private static Mdb loadMdb(String file) {
+        return MdbFactory.createInstance(List.of(YConfiguration.wrap(
+                Map.of("type", "xtce", "args", Map.of("file", file)))), false, false);
+    }
+}
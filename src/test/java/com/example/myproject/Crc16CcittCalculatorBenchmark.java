@@ -0,0 +1,53 @@
+package com.example.myproject;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yamcs.tctm.ccsds.error.CrcCciitCalculator;
+
+/**
+ * Time to check the packet error control of a packet, with the slicing-by-8 {@link Crc16CcittCalculator} and with the
+ * Yamcs calculator. The packets of the Spacecraft container of the MDB are 123 bytes long.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Crc16CcittCalculatorBenchmark {
+
+    @Param({ "123", "1024" })
+    public int packetLength;
+
+    private final Crc16CcittCalculator calculator = new Crc16CcittCalculator();
+    private final CrcCciitCalculator yamcsCalculator = new CrcCciitCalculator();
+    private byte[] packet;
+
+    @Setup
+    public void setup() {
+        packet = new byte[packetLength];
+        new Random(1234).nextBytes(packet);
+    }
+
+    @Benchmark
+    public int slicingBy8() {
+        return calculator.compute(packet, 0, packet.length - 2);
+    }
+
+    @Benchmark
+    public int yamcs() {
+        return yamcsCalculator.compute(packet, 0, packet.length - 2);
+    }
+}
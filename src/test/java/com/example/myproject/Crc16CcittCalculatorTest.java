@@ -0,0 +1,47 @@
+package com.example.myproject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.yamcs.YConfiguration;
+import org.yamcs.tctm.ErrorDetectionWordCalculator;
+import org.yamcs.tctm.ccsds.error.CrcCciitCalculator;
+
+public class Crc16CcittCalculatorTest {
+
+    @Test
+    public void testCheckValue() {
+        // CRC-16/CCITT-FALSE check value
+        byte[] data = "123456789".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0x29B1, new Crc16CcittCalculator().compute(data, 0, data.length));
+    }
+
+    @Test
+    public void testSameAsYamcs() {
+        compareWithYamcs(new Crc16CcittCalculator(), new CrcCciitCalculator());
+    }
+
+    @Test
+    public void testSameAsYamcsWithInitialValue() {
+        YConfiguration config = YConfiguration.wrap(Map.of("initialValue", 0x1D0F));
+        compareWithYamcs(new Crc16CcittCalculator(0x1D0F), new CrcCciitCalculator(config));
+    }
+
+    private static void compareWithYamcs(ErrorDetectionWordCalculator calculator,
+            ErrorDetectionWordCalculator yamcsCalculator) {
+        Random random = new Random(1234);
+        byte[] data = new byte[1100];
+        for (int i = 0; i < 2000; i++) {
+            random.nextBytes(data);
+            int offset = random.nextInt(64);
+            // All the lengths up to a few blocks of 8 bytes, then random ones
+            int length = (i < 100) ? i : random.nextInt(data.length - offset);
+            assertEquals(yamcsCalculator.compute(data, offset, length), calculator.compute(data, offset, length),
+                    "offset " + offset + ", length " + length);
+        }
+    }
+}
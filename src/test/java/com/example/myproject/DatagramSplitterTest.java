@@ -0,0 +1,53 @@
+package com.example.myproject;
+
+import static com.example.myproject.TestPackets.concat;
+import static com.example.myproject.TestPackets.packet;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.yamcs.TmPacket;
+
+public class DatagramSplitterTest {
+
+    @Test
+    public void testSplit() {
+        byte[] p1 = packet(100, 1, (byte) 1, (byte) 2);
+        byte[] p2 = packet(101, 2, (byte) 3);
+        byte[] p3 = packet(100, 2, new byte[100]);
+        TmPacket datagram = new TmPacket(1000, concat(p1, p2, p3));
+
+        List<TmPacket> packets = new ArrayList<>();
+        assertEquals(0, DatagramSplitter.split(datagram, packets::add));
+        assertEquals(3, packets.size());
+        assertArrayEquals(p1, packets.get(0).getPacket());
+        assertArrayEquals(p2, packets.get(1).getPacket());
+        assertArrayEquals(p3, packets.get(2).getPacket());
+        assertEquals(1000, packets.get(2).getReceptionTime());
+    }
+
+    @Test
+    public void testTrailingBytes() {
+        byte[] p1 = packet(100, 1, (byte) 1, (byte) 2);
+        byte[] p2 = packet(100, 2, new byte[20]);
+        // The second packet is truncated
+        byte[] bytes = concat(p1, Arrays.copyOf(p2, 10));
+
+        List<TmPacket> packets = new ArrayList<>();
+        assertEquals(10, DatagramSplitter.split(new TmPacket(0, bytes), packets::add));
+        assertEquals(1, packets.size());
+        assertArrayEquals(p1, packets.get(0).getPacket());
+    }
+
+    @Test
+    public void testShortHeader() {
+        assertEquals(-1, DatagramSplitter.packetLength(new byte[5], 0));
+        byte[] p = packet(100, 1, (byte) 1);
+        assertEquals(p.length, DatagramSplitter.packetLength(p, 0));
+        assertEquals(-1, DatagramSplitter.packetLength(concat(p, new byte[3]), p.length));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.myproject;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class DuplicateFilterTest {
+
+    @Test
+    public void testDuplicatesWithinWindow() {
+        DuplicateFilter filter = new DuplicateFilter(16, 5000);
+        for (int seq = 0; seq < 20; seq++) {
+            assertFalse(filter.isDuplicate(100, seq, 0));
+        }
+        assertTrue(filter.isDuplicate(100, 19, 0));
+        assertTrue(filter.isDuplicate(100, 10, 0));
+        // Other APIDs are independent
+        assertFalse(filter.isDuplicate(101, 19, 0));
+    }
+
+    @Test
+    public void testLatePacketWithinWindow() {
+        DuplicateFilter filter = new DuplicateFilter(16, 5000);
+        assertFalse(filter.isDuplicate(100, 10, 0));
+        assertFalse(filter.isDuplicate(100, 12, 0));
+        assertFalse(filter.isDuplicate(100, 11, 0));
+        assertTrue(filter.isDuplicate(100, 11, 0));
+    }
+
+    @Test
+    public void testWrapAround() {
+        DuplicateFilter filter = new DuplicateFilter(16, 5000);
+        assertFalse(filter.isDuplicate(100, 0x3FFE, 0));
+        assertFalse(filter.isDuplicate(100, 0x3FFF, 0));
+        assertFalse(filter.isDuplicate(100, 0, 0));
+        assertFalse(filter.isDuplicate(100, 1, 0));
+        assertTrue(filter.isDuplicate(100, 0x3FFF, 0));
+    }
+
+    @Test
+    public void testCounterRestart() {
+        DuplicateFilter filter = new DuplicateFilter(1024, 5000);
+        for (int seq = 0; seq <= 5000; seq++) {
+            filter.isDuplicate(100, seq, 0);
+        }
+        // The counter restarts from 0 without silence: no count of the new sequence is a duplicate
+        for (int seq = 0; seq <= 5000; seq++) {
+            assertFalse(filter.isDuplicate(100, seq, 0), "seq " + seq);
+        }
+    }
+
+    @Test
+    public void testRestartAfterSilence() {
+        DuplicateFilter filter = new DuplicateFilter(1024, 5000);
+        for (int seq = 0; seq <= 100; seq++) {
+            filter.isDuplicate(100, seq, 0);
+        }
+        // Restart to a count inside the window, after a silence
+        assertFalse(filter.isDuplicate(100, 50, 5000));
+        assertFalse(filter.isDuplicate(100, 51, 5000));
+        assertTrue(filter.isDuplicate(100, 51, 5000));
+    }
+
+    @Test
+    public void testReset() {
+        DuplicateFilter filter = new DuplicateFilter(1024, 5000);
+        filter.isDuplicate(100, 5, 0);
+        filter.isDuplicate(100, 6, 0);
+        filter.reset(100);
+        assertFalse(filter.isDuplicate(100, 5, 0));
+        assertTrue(filter.isDuplicate(100, 5, 0));
+    }
+}
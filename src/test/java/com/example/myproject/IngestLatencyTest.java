@@ -0,0 +1,59 @@
+package com.example.myproject;
+
+import static com.example.myproject.TestPackets.packet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.yamcs.TmPacket;
+
+public class IngestLatencyTest {
+
+    @Test
+    public void testWindows() throws Exception {
+        IngestLatency latency = new IngestLatency();
+        List<TmPacket> sink = new ArrayList<>();
+        latency.setNext(sink::add);
+        assertTrue(latency.getExtraInfo().isEmpty());
+
+        latency.datagramReceived();
+        Thread.sleep(20);
+        latency.processPacket(new TmPacket(0, packet(100, 0, (byte) 0)));
+        latency.collectSystemParameters(0, new ArrayList<>());
+        Map<String, Object> extra = latency.getExtraInfo();
+        assertTrue((Double) extra.get("Latency p50 (us)") >= 20_000 * 0.97, extra.toString());
+
+        // The new window does not include the previous packet
+        latency.datagramReceived();
+        latency.processPacket(new TmPacket(0, packet(100, 1, (byte) 0)));
+        latency.collectSystemParameters(0, new ArrayList<>());
+        extra = latency.getExtraInfo();
+        assertTrue((Double) extra.get("Latency p99.9 (us)") < 10_000, extra.toString());
+
+        // A window without packets keeps the last values
+        latency.collectSystemParameters(0, new ArrayList<>());
+        assertEquals(extra, latency.getExtraInfo());
+        assertEquals(2, sink.size());
+    }
+
+    @Test
+    public void testOtherThreadsNotMeasured() throws Exception {
+        IngestLatency latency = new IngestLatency();
+        List<TmPacket> sink = new ArrayList<>();
+        latency.setNext(sink::add);
+
+        latency.datagramReceived();
+        // e.g. released by the resequencer timer
+        Thread timer = new Thread(() -> latency.processPacket(new TmPacket(0, packet(100, 0, (byte) 0))));
+        timer.start();
+        timer.join();
+
+        latency.collectSystemParameters(0, new ArrayList<>());
+        assertTrue(latency.getExtraInfo().isEmpty());
+        assertEquals(1, sink.size());
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.myproject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        assertEquals(0, LatencyHistogram.bucket(-5));
+        for (long v = 0; v < 32; v++) {
+            assertEquals(v, LatencyHistogram.bucketValue(LatencyHistogram.bucket(v)));
+        }
+        int previous = 0;
+        for (long v = 32; v < (1L << 41); v += 1 + v / 50) {
+            int bucket = LatencyHistogram.bucket(v);
+            assertTrue(bucket >= previous, "value " + v);
+            previous = bucket;
+            long value = LatencyHistogram.bucketValue(bucket);
+            // Half the width of a bucket
+            assertTrue(Math.abs(value - v) <= v / 64 + 1, "value " + v + ", bucket value " + value);
+        }
+        assertEquals(LatencyHistogram.bucket(1L << 41), LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(1);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal around 50 us, with a long tail
+            values[i] = (long) (50_000 * Math.exp(random.nextGaussian()));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+        assertEquals(values.length, snapshot.getCount());
+        for (double q : new double[] { 0.01, 0.1, 0.5, 0.9, 0.99, 0.999, 1 }) {
+            long expected = values[(int) Math.ceil(q * values.length) - 1];
+            long actual = snapshot.getPercentile(q);
+            assertTrue(Math.abs(actual - expected) <= expected * 0.03,
+                    "quantile " + q + ": expected " + expected + ", got " + actual);
+        }
+    }
+
+    @Test
+    public void testSnapshotResets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(1_000_000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(1_000_000, snapshot.getPercentile(0.5), 1_000_000 * 0.03);
+
+        LatencyHistogram.Snapshot empty = histogram.snapshotAndReset();
+        assertEquals(0, empty.getCount());
+        assertEquals(0, empty.getPercentile(0.5));
+
+        histogram.record(1000);
+        snapshot = histogram.snapshotAndReset();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(1000, snapshot.getPercentile(0.999), 1000 * 0.03);
+    }
+
+    @Test
+    public void testConcurrentSnapshots() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int n = 1_000_000;
+        Thread recorder = new Thread(() -> {
+            for (int i = 0; i < n; i++) {
+                histogram.record(i & 0xFFFF);
+            }
+        });
+        recorder.start();
+        long total = 0;
+        while (recorder.isAlive()) {
+            total += histogram.snapshotAndReset().getCount();
+        }
+        recorder.join();
+        total += histogram.snapshotAndReset().getCount();
+        assertEquals(n, total);
+    }
+}
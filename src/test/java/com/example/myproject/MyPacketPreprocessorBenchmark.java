@@ -0,0 +1,115 @@
+package com.example.myproject;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yamcs.TmPacket;
+import org.yamcs.YConfiguration;
+import org.yamcs.events.EventProducer;
+import org.yamcs.events.EventProducerFactory;
+import org.yamcs.utils.ByteArrayUtils;
+import org.yamcs.utils.TimeEncoding;
+
+/**
+ * Compares the stage pipeline of {@link MyPacketPreprocessor} with the same processing written as one method, as it
+ * was before the stages: error detection, continuity and generation time, on in-sequence packets of 123 bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MyPacketPreprocessorBenchmark {
+
+    // One packet per sequence count, so that the counts stay continuous when they wrap around
+    private final byte[][] packets = new byte[0x4000][];
+    private MyPacketPreprocessor pipeline;
+    private HandWritten handWritten;
+    private int n;
+    private long receptionTime;
+
+    @Setup
+    public void setup() {
+        TimeEncoding.setUp();
+        EventProducerFactory.setMockup(true);
+        Crc16CcittCalculator crc = new Crc16CcittCalculator();
+        for (int seq = 0; seq < packets.length; seq++) {
+            byte[] bytes = TestPackets.packet(100, seq, new byte[123 - CcsdsHeader.PRIMARY_HEADER_LENGTH]);
+            ByteArrayUtils.encodeUnsignedShort(crc.compute(bytes, 0, bytes.length - 2), bytes, bytes.length - 2);
+            packets[seq] = bytes;
+        }
+        YConfiguration config = YConfiguration.wrap(Map.of("errorDetection", Map.of("type", "CRC-16-CCIIT")));
+        pipeline = new MyPacketPreprocessor("benchmark", config);
+        handWritten = new HandWritten(EventProducerFactory.getEventProducer("benchmark", "benchmark", 10000));
+    }
+
+    @Benchmark
+    public TmPacket pipeline() {
+        return pipeline.process(nextPacket());
+    }
+
+    @Benchmark
+    public TmPacket handWritten() {
+        return handWritten.process(nextPacket());
+    }
+
+    private TmPacket nextPacket() {
+        return new TmPacket(receptionTime++, packets[n++ & 0x3FFF]);
+    }
+
+    /**
+     * The processing of the default stages, without the pipeline.
+     */
+    static class HandWritten {
+        final Crc16CcittCalculator crc = new Crc16CcittCalculator();
+        final ApidSeqTracker seqCounts = new ApidSeqTracker();
+        final SeqResetDetector seqResetDetector = new SeqResetDetector(YConfiguration.emptyConfig());
+        final PacketStatistics statistics = new PacketStatistics();
+        final SeqJumpReporter seqJumpReporter;
+
+        HandWritten(EventProducer eventProducer) {
+            seqJumpReporter = new SeqJumpReporter(eventProducer, 10000);
+        }
+
+        TmPacket process(TmPacket packet) {
+            byte[] bytes = packet.getPacket();
+            int apidseqcount = CcsdsHeader.apidSeqCount(bytes);
+            int apid = CcsdsHeader.apid(apidseqcount);
+            int seq = CcsdsHeader.seqCount(apidseqcount);
+            statistics.received(apid);
+
+            int n = bytes.length - 2;
+            if (crc.compute(bytes, 0, n) != ByteArrayUtils.decodeUnsignedShort(bytes, n)) {
+                statistics.corrupted(apid);
+                packet.setGenerationTime(TimeEncoding.getWallclockTime());
+                packet.setInvalid();
+                return packet;
+            }
+
+            int oldseq = seqCounts.update(apid, seq);
+            int delta = (seq - oldseq) & 0x3FFF;
+            boolean reset = seqResetDetector.update(apid, seq, bytes, packet.getReceptionTime(),
+                    oldseq == ApidSeqTracker.UNSEEN || delta == 1);
+            if (oldseq != ApidSeqTracker.UNSEEN && !reset && delta != 1) {
+                statistics.lost(apid, delta - 1);
+                seqJumpReporter.jump(apid, oldseq, seq, packet.getReceptionTime());
+            }
+
+            packet.setGenerationTime(TimeEncoding.getWallclockTime());
+            packet.setSequenceCount(apidseqcount);
+            seqJumpReporter.tick(packet.getReceptionTime());
+            return packet;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.myproject;
+
+import static com.example.myproject.PacketDecompressorTest.data;
+import static com.example.myproject.PacketDecompressorTest.deflate;
+import static com.example.myproject.PacketDecompressorTest.withCrc;
+import static com.example.myproject.TestPackets.concat;
+import static com.example.myproject.TestPackets.packet;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.yamcs.TmPacket;
+import org.yamcs.YConfiguration;
+import org.yamcs.events.EventProducerFactory;
+import org.yamcs.utils.ByteArrayUtils;
+import org.yamcs.utils.TimeEncoding;
+
+public class MyPacketPreprocessorTest {
+
+    private static final long DAY = 86_400_000L;
+
+    @BeforeAll
+    public static void setUp() {
+        TimeEncoding.setUp();
+        EventProducerFactory.setMockup(true);
+    }
+
+    @Test
+    public void correctsRealtimePacketsOnly() {
+        MyPacketPreprocessor pp = clockCorrelatingPreprocessor();
+
+        // The ground clock is 200 ms ahead of the onboard one
+        long onboard = 20_000 * DAY;
+        for (int seq = 0; seq < 10; seq++) {
+            TmPacket pkt = pp.process(timedPacket(seq, onboard + seq * 1000, onboard + seq * 1000 + 200));
+            // The packets are used once they span 2 * maxAge, the estimate is valid from the fourth one
+            if (seq > 2) {
+                assertEquals(TimeEncoding.fromUnixMillisec(onboard + seq * 1000 + 200), pkt.getGenerationTime());
+            }
+        }
+
+        // A dumped packet, generated an hour before its reception, keeps its onboard time
+        TmPacket dumped = pp.process(timedPacket(10, onboard, onboard + 3_600_000));
+        assertEquals(TimeEncoding.fromUnixMillisec(onboard), dumped.getGenerationTime());
+
+        // and did not change the estimate
+        TmPacket pkt = pp.process(timedPacket(11, onboard + 11_000, onboard + 11_200));
+        assertEquals(TimeEncoding.fromUnixMillisec(onboard + 11_200), pkt.getGenerationTime());
+    }
+
+    @Test
+    public void countsLatePacketsAsOutOfOrder() {
+        MyPacketPreprocessor pp = new MyPacketPreprocessor("test", YConfiguration.emptyConfig());
+        for (int seq = 0; seq <= 200; seq++) {
+            pp.process(new TmPacket(seq, packet(100, seq)));
+        }
+        // Slightly late, then far behind the newest count, each followed by the next packet in order
+        pp.process(new TmPacket(201, packet(100, 190)));
+        pp.process(new TmPacket(202, packet(100, 201)));
+        pp.process(new TmPacket(203, packet(100, 100)));
+        pp.process(new TmPacket(204, packet(100, 202)));
+        // A gap, a duplicate
+        pp.process(new TmPacket(205, packet(100, 205)));
+        pp.process(new TmPacket(206, packet(100, 205)));
+
+        PacketStatistics.ApidCounters c = pp.getStatistics().get(100);
+        assertEquals(207, c.received.sum());
+        assertEquals(2, c.outOfOrder.sum());
+        assertEquals(2, c.lost.sum());
+        assertEquals(1, c.duplicated.sum());
+        assertEquals(0, c.resets.sum());
+    }
+
+    @Test
+    public void correlatesOffsetsLargerThanMaxAge() {
+        // The onboard clock is one hour behind, then one hour ahead
+        for (long offset : new long[] { 3_600_000, -3_600_000 }) {
+            MyPacketPreprocessor pp = clockCorrelatingPreprocessor();
+            long onboard = 20_000 * DAY;
+
+            // A dump received before any realtime packet, 100 times faster than generated, is not used
+            for (int seq = 0; seq < 3; seq++) {
+                pp.process(timedPacket(seq, onboard - 1_000_000 + seq * 1000, onboard + offset + seq * 10));
+            }
+            for (int seq = 3; seq < 10; seq++) {
+                TmPacket pkt = pp.process(timedPacket(seq, onboard + seq * 1000, onboard + seq * 1000 + offset));
+                if (seq > 5) {
+                    assertEquals(TimeEncoding.fromUnixMillisec(onboard + seq * 1000 + offset), pkt.getGenerationTime());
+                }
+            }
+
+            // A dumped packet, generated 30 minutes before its reception, keeps its onboard time
+            TmPacket dumped = pp.process(timedPacket(10, onboard, onboard + 10_000 + offset));
+            assertEquals(TimeEncoding.fromUnixMillisec(onboard), dumped.getGenerationTime());
+
+            TmPacket pkt = pp.process(timedPacket(11, onboard + 11_000, onboard + 11_000 + offset));
+            assertEquals(TimeEncoding.fromUnixMillisec(onboard + 11_000 + offset), pkt.getGenerationTime());
+        }
+    }
+
+    @Test
+    public void countsFilteredPacketsForTheLink() {
+        MyPacketPreprocessor pp = new MyPacketPreprocessor("test", YConfiguration.wrap(Map.of(
+                "apidFilter", Map.of("deny", List.of(300)))));
+
+        assertNull(pp.process(new TmPacket(0, packet(ApidFilter.IDLE_APID, 0, (byte) 0))));
+        assertNull(pp.process(new TmPacket(0, packet(300, 0, (byte) 0))));
+        List<TmPacket> sink = new ArrayList<>();
+        pp.processBatch(new TmPacket(0, concat(packet(ApidFilter.IDLE_APID, 1, (byte) 0), packet(100, 0, (byte) 0),
+                packet(300, 1, (byte) 0))), sink::add);
+
+        assertEquals(1, sink.size());
+        assertEquals(4, pp.getStatistics().getFiltered());
+        // The filtered APIDs get no counters, hence no system parameters
+        assertNull(pp.getStatistics().get(ApidFilter.IDLE_APID));
+        assertNull(pp.getStatistics().get(300));
+        assertEquals(1, pp.getStatistics().get(100).received.sum());
+    }
+
+    @Test
+    public void decompressesReassembledPackets() {
+        MyPacketPreprocessor pp = new MyPacketPreprocessor("test", YConfiguration.wrap(Map.of(
+                "errorDetection", Map.of("type", "CRC-16-CCIIT"),
+                "reassembleSegments", true,
+                "decompression", Map.of("apids", List.of(200)))));
+
+        // The compressed packet is split in two segments, each with its own CRC
+        byte[] data = data(1000);
+        byte[] compressed = deflate(data);
+        int half = compressed.length / 2;
+        byte[] first = packet(200, CcsdsHeader.SEQ_FLAGS_FIRST, 0, Arrays.copyOf(compressed, half));
+        byte[] last = packet(200, CcsdsHeader.SEQ_FLAGS_LAST, 1,
+                Arrays.copyOfRange(compressed, half, compressed.length));
+
+        assertNull(pp.process(new TmPacket(0, withCrc(first))));
+        TmPacket pkt = pp.process(new TmPacket(0, withCrc(last)));
+
+        assertFalse(pkt.isInvalid());
+        assertArrayEquals(packet(200, 0, data), pkt.getPacket());
+    }
+
+    private static MyPacketPreprocessor clockCorrelatingPreprocessor() {
+        return new MyPacketPreprocessor("test", YConfiguration.wrap(Map.of(
+                "timeEncoding", Map.of("type", "CDS", "epoch", "UNIX"),
+                "clockCorrelation", Map.of("minSamples", 2, "maxAge", 1000, "correctGenerationTime", true))));
+    }
+
+    // A packet with a secondary header starting with the CDS onboard time, both times in Unix milliseconds
+    private static TmPacket timedPacket(int seq, long onboardTime, long receptionTime) {
+        byte[] bytes = packet(100, seq, new byte[10]);
+        bytes[0] |= 0x08;
+        ByteArrayUtils.encodeUnsignedShort((int) (onboardTime / DAY), bytes, 6);
+        ByteArrayUtils.encodeInt((int) (onboardTime % DAY), bytes, 8);
+        return new TmPacket(TimeEncoding.fromUnixMillisec(receptionTime), bytes);
+    }
+}
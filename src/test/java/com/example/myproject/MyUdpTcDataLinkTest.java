@@ -0,0 +1,202 @@
+package com.example.myproject;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.yamcs.YConfiguration;
+import org.yamcs.cmdhistory.CommandHistoryPublisher;
+import org.yamcs.commanding.PreparedCommand;
+import org.yamcs.events.EventProducerFactory;
+import org.yamcs.protobuf.Commanding.CommandId;
+import org.yamcs.utils.TimeEncoding;
+
+/**
+ * The packing of the link, with a UDP socket receiving the datagrams. The link thread is not started: the tests call
+ * the methods it calls.
+ */
+public class MyUdpTcDataLinkTest {
+
+    static final String SENT_STATUS = CommandHistoryPublisher.AcknowledgeSent_KEY
+            + CommandHistoryPublisher.SUFFIX_STATUS;
+
+    private final RecordingPublisher history = new RecordingPublisher();
+    private DatagramSocket receiver;
+    private MyUdpTcDataLink link;
+    private int seq;
+
+    @BeforeAll
+    public static void setUpYamcs() {
+        TimeEncoding.setUp();
+        EventProducerFactory.setMockup(true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (link != null) {
+            link.shutDown();
+        }
+        receiver.close();
+    }
+
+    @Test
+    public void testPacksUpToMtu() throws Exception {
+        startLink(30, 1000);
+        PreparedCommand c1 = uplink(12);
+        PreparedCommand c2 = uplink(12);
+        assertNull(history.get(c1, SENT_STATUS));
+
+        // The third command does not fit: the first two are sent
+        PreparedCommand c3 = uplink(12);
+        assertArrayEquals(TestPackets.concat(c1.getBinary(), c2.getBinary()), receive());
+        assertSent(c1, 1);
+        assertSent(c2, 1);
+        assertNull(history.get(c3, SENT_STATUS));
+    }
+
+    @Test
+    public void testLargerThanMtu() throws Exception {
+        startLink(30, 1000);
+        PreparedCommand c1 = uplink(12);
+        PreparedCommand c2 = uplink(40);
+
+        // The datagram being filled is sent first, then the large command on its own
+        assertArrayEquals(c1.getBinary(), receive());
+        assertArrayEquals(c2.getBinary(), receive());
+        assertSent(c1, 1);
+        assertSent(c2, 2);
+    }
+
+    @Test
+    public void testFlushDelay() throws Exception {
+        startLink(1000, 50);
+        PreparedCommand c1 = uplink(12);
+        link.doHousekeeping();
+        assertNull(history.get(c1, SENT_STATUS));
+
+        Thread.sleep(60);
+        link.doHousekeeping();
+        assertArrayEquals(c1.getBinary(), receive());
+        assertSent(c1, 1);
+    }
+
+    @Test
+    public void testFlushOnShutdown() throws Exception {
+        startLink(1000, 1000);
+        PreparedCommand c1 = uplink(12);
+        PreparedCommand c2 = uplink(12);
+        link.shutDown();
+        assertArrayEquals(TestPackets.concat(c1.getBinary(), c2.getBinary()), receive());
+        assertSent(c1, 1);
+        assertSent(c2, 1);
+    }
+
+    @Test
+    public void testSendFailure() throws Exception {
+        // Two commands fit in the mtu, but not in a UDP datagram
+        startLink(66_000, 1000);
+        PreparedCommand c1 = uplink(33_000);
+        PreparedCommand c2 = uplink(33_000);
+        link.shutDown();
+
+        for (PreparedCommand pc : new PreparedCommand[] { c1, c2 }) {
+            assertEquals("NOK", history.get(pc, SENT_STATUS));
+            assertEquals("NOK", history.get(pc, CommandHistoryPublisher.CommandComplete_KEY
+                    + CommandHistoryPublisher.SUFFIX_STATUS));
+            assertNull(history.get(pc, "udp-datagram"));
+        }
+        assertThrows(SocketTimeoutException.class, this::receive);
+    }
+
+    private void startLink(int mtu, int flushDelay) throws Exception {
+        receiver = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        receiver.setSoTimeout(1000);
+        MyUdpTcDataLink link = new MyUdpTcDataLink();
+        YConfiguration config = YConfiguration.wrap(Map.of("name", "udp-out",
+                "class", MyUdpTcDataLink.class.getName(), "host", "127.0.0.1", "port", receiver.getLocalPort(),
+                "packing", Map.of("mtu", mtu, "flushDelay", flushDelay)));
+        link.init("test", "udp-out", link.getSpec().validate(config));
+        link.setCommandHistoryPublisher(history);
+        link.startUp();
+        this.link = link;
+    }
+
+    private PreparedCommand uplink(int length) throws Exception {
+        CommandId cmdId = CommandId.newBuilder().setCommandName("/myproject/Reboot").setOrigin("test")
+                .setSequenceNumber(seq++).setGenerationTime(0).build();
+        PreparedCommand pc = new PreparedCommand(cmdId);
+        byte[] binary = TestPackets.packet(101, seq, new byte[length - CcsdsHeader.PRIMARY_HEADER_LENGTH]);
+        pc.setBinary(binary);
+        link.uplinkCommand(pc);
+        return pc;
+    }
+
+    private byte[] receive() throws Exception {
+        DatagramPacket datagram = new DatagramPacket(new byte[65536], 65536);
+        receiver.receive(datagram);
+        return Arrays.copyOf(datagram.getData(), datagram.getLength());
+    }
+
+    private void assertSent(PreparedCommand pc, int datagram) {
+        assertEquals("OK", history.get(pc, SENT_STATUS));
+        assertEquals(datagram, history.get(pc, "udp-datagram"));
+        assertFalse(history.has(pc, CommandHistoryPublisher.CommandComplete_KEY
+                + CommandHistoryPublisher.SUFFIX_STATUS));
+    }
+
+    /**
+     * Keeps the last value of each attribute of each command.
+     */
+    static class RecordingPublisher implements CommandHistoryPublisher {
+        private final Map<CommandId, Map<String, Object>> attributes = new ConcurrentHashMap<>();
+
+        Object get(PreparedCommand pc, String key) {
+            return attributes.getOrDefault(pc.getCommandId(), Map.of()).get(key);
+        }
+
+        boolean has(PreparedCommand pc, String key) {
+            return get(pc, key) != null;
+        }
+
+        private void put(CommandId cmdId, String key, Object value) {
+            attributes.computeIfAbsent(cmdId, k -> new ConcurrentHashMap<>()).put(key, value);
+        }
+
+        @Override
+        public void publish(CommandId cmdId, String key, String value) {
+            put(cmdId, key, value);
+        }
+
+        @Override
+        public void publish(CommandId cmdId, String key, int value) {
+            put(cmdId, key, value);
+        }
+
+        @Override
+        public void publish(CommandId cmdId, String key, long value) {
+            put(cmdId, key, value);
+        }
+
+        @Override
+        public void publish(CommandId cmdId, String key, byte[] binary) {
+            put(cmdId, key, binary);
+        }
+
+        @Override
+        public void addCommand(PreparedCommand pc) {
+        }
+    }
+}
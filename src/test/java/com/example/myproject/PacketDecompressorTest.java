@@ -0,0 +1,87 @@
+package com.example.myproject;
+
+import static com.example.myproject.TestPackets.packet;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+import org.yamcs.TmPacket;
+import org.yamcs.YConfiguration;
+import org.yamcs.utils.ByteArrayUtils;
+
+public class PacketDecompressorTest {
+
+    private static final YConfiguration CONFIG = YConfiguration.wrap(Map.of("apids", List.of(200)));
+
+    private static final Crc16CcittCalculator crc = new Crc16CcittCalculator();
+
+    @Test
+    public void testWithoutTrailer() {
+        PacketDecompressor decompressor = new PacketDecompressor(CONFIG, null);
+        byte[] data = data(1000);
+
+        TmPacket result = decompressor.decompress(new TmPacket(0, packet(200, 7, deflate(data))), false);
+
+        assertArrayEquals(packet(200, 7, data), result.getPacket());
+    }
+
+    @Test
+    public void testTrailerIsComputedAgain() {
+        PacketDecompressor decompressor = new PacketDecompressor(CONFIG, crc);
+        byte[] data = data(1000);
+
+        TmPacket result = decompressor.decompress(new TmPacket(0, withCrc(packet(200, 7, deflate(data)))), true);
+
+        assertArrayEquals(withCrc(packet(200, 7, data)), result.getPacket());
+    }
+
+    @Test
+    public void testPacketWithoutTrailer() {
+        // A reassembled packet has no trailer, although one is configured: no compressed byte must be cut
+        PacketDecompressor decompressor = new PacketDecompressor(CONFIG, crc);
+        byte[] data = data(1000);
+
+        TmPacket result = decompressor.decompress(new TmPacket(0, packet(200, 7, deflate(data))), false);
+
+        assertArrayEquals(packet(200, 7, data), result.getPacket());
+    }
+
+    @Test
+    public void testCorruptedData() {
+        PacketDecompressor decompressor = new PacketDecompressor(CONFIG, null);
+        byte[] compressed = deflate(data(1000));
+
+        assertNull(decompressor.decompress(new TmPacket(0, packet(200, 7, Arrays.copyOf(compressed, 10))), false));
+    }
+
+    static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i % 7);
+        }
+        return data;
+    }
+
+    static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] buffer = new byte[data.length + 64];
+        int n = deflater.deflate(buffer);
+        deflater.end();
+        return Arrays.copyOf(buffer, n);
+    }
+
+    // Appends a valid CRC to the packet
+    static byte[] withCrc(byte[] packet) {
+        byte[] bytes = Arrays.copyOf(packet, packet.length + 2);
+        CcsdsHeader.setPacketLength(bytes, bytes.length);
+        ByteArrayUtils.encodeUnsignedShort(crc.compute(bytes, 0, packet.length), bytes, packet.length);
+        return bytes;
+    }
+}
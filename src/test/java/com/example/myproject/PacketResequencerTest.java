@@ -0,0 +1,119 @@
+package com.example.myproject;
+
+import static com.example.myproject.TestPackets.packet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.yamcs.TmPacket;
+
+public class PacketResequencerTest {
+
+    private final List<TmPacket> released = new ArrayList<>();
+    private final PacketResequencer resequencer = new PacketResequencer(4, 100, released::add);
+
+    @Test
+    public void testInOrder() {
+        offer(0, 100, 101, 102);
+        assertEquals(List.of(100, 101, 102), releasedCounts());
+        assertEquals(0, resequencer.getReorderedCount());
+        assertEquals(0, resequencer.getGivenUpCount());
+    }
+
+    @Test
+    public void testGapFilled() {
+        offer(0, 0, 2, 3);
+        assertEquals(List.of(0), releasedCounts());
+        offer(10, 1);
+        assertEquals(List.of(0, 1, 2, 3), releasedCounts());
+        assertEquals(2, resequencer.getReorderedCount());
+        assertEquals(0, resequencer.getGivenUpCount());
+    }
+
+    @Test
+    public void testApidsAreIndependent() {
+        resequencer.offer(new TmPacket(0, packet(100, 0)), 0);
+        resequencer.offer(new TmPacket(0, packet(101, 7)), 0);
+        resequencer.offer(new TmPacket(0, packet(100, 2)), 0);
+        resequencer.offer(new TmPacket(0, packet(101, 8)), 0);
+        assertEquals(List.of(0, 7, 8), releasedCounts());
+    }
+
+    @Test
+    public void testTooFarAhead() {
+        // The window holds 4 counts after the expected one: 5 does not fit while 1 is missing
+        offer(0, 0, 2, 3, 5);
+        assertEquals(List.of(0, 2, 3, 5), releasedCounts());
+        assertEquals(2, resequencer.getGivenUpCount());
+
+        // Late packets are released as they come
+        offer(0, 1, 4, 6);
+        assertEquals(List.of(0, 2, 3, 5, 1, 4, 6), releasedCounts());
+    }
+
+    @Test
+    public void testDuplicateOfHeldPacket() {
+        offer(0, 0, 2, 2);
+        assertEquals(List.of(0, 2), releasedCounts());
+        offer(0, 1);
+        assertEquals(List.of(0, 2, 1, 2), releasedCounts());
+    }
+
+    @Test
+    public void testDeadline() {
+        offer(0, 0, 2);
+        offer(50, 4);
+        resequencer.expire(99);
+        assertEquals(List.of(0), releasedCounts());
+
+        // 2 has waited long enough, 4 waits until its own deadline
+        resequencer.expire(100);
+        assertEquals(List.of(0, 2), releasedCounts());
+        assertEquals(1, resequencer.getGivenUpCount());
+        resequencer.expire(150);
+        assertEquals(List.of(0, 2, 4), releasedCounts());
+        assertEquals(2, resequencer.getGivenUpCount());
+
+        offer(110, 5);
+        assertEquals(List.of(0, 2, 4, 5), releasedCounts());
+    }
+
+    @Test
+    public void testWrapAround() {
+        offer(0, 0x3FFE, 0x0000, 0x0001, 0x3FFF);
+        assertEquals(List.of(0x3FFE, 0x3FFF, 0x0000, 0x0001), releasedCounts());
+        assertEquals(2, resequencer.getReorderedCount());
+
+        // A gap across the wrap around, given up on at the deadline
+        offer(0, 0x0003);
+        resequencer.expire(100);
+        assertEquals(List.of(0x3FFE, 0x3FFF, 0x0000, 0x0001, 0x0003), releasedCounts());
+        assertEquals(1, resequencer.getGivenUpCount());
+    }
+
+    @Test
+    public void testFlush() {
+        offer(0, 0, 3, 2);
+        resequencer.offer(new TmPacket(0, packet(101, 0x3FFE)), 0);
+        resequencer.offer(new TmPacket(0, packet(101, 0x0001)), 0);
+        resequencer.flush();
+        assertEquals(List.of(0, 0x3FFE, 2, 3, 0x0001), releasedCounts());
+        assertEquals(3, resequencer.getGivenUpCount());
+    }
+
+    private void offer(long now, int... seqCounts) {
+        for (int seq : seqCounts) {
+            resequencer.offer(new TmPacket(now, packet(100, seq)), now);
+        }
+    }
+
+    private List<Integer> releasedCounts() {
+        List<Integer> counts = new ArrayList<>();
+        for (TmPacket packet : released) {
+            counts.add(CcsdsHeader.seqCount(CcsdsHeader.apidSeqCount(packet.getPacket())));
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.myproject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersService;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.xtce.SystemParameter;
+import org.yamcs.xtce.UnitType;
+
+public class PacketStatisticsTest {
+
+    private final PacketStatistics statistics = new PacketStatistics();
+    private final FakeSystemParameters sps = new FakeSystemParameters();
+
+    @BeforeEach
+    public void setUp() {
+        statistics.setupSystemParameters(sps, "links/tm");
+    }
+
+    @Test
+    public void testCounters() {
+        statistics.received(100);
+        statistics.received(100, 9);
+        statistics.lost(100, 3);
+        statistics.duplicated(100);
+        statistics.reset(100);
+        statistics.outOfOrder(100);
+        statistics.outOfOrder(100);
+        statistics.suppressed(100);
+        statistics.corrupted(100);
+        statistics.received(200);
+        statistics.filtered();
+        statistics.filtered();
+
+        Map<String, Object> values = collect(1000);
+        assertEquals(10L, values.get("links/tm/apid/100/received"));
+        assertEquals(3L, values.get("links/tm/apid/100/lost"));
+        assertEquals(1L, values.get("links/tm/apid/100/duplicated"));
+        assertEquals(1L, values.get("links/tm/apid/100/resets"));
+        assertEquals(2L, values.get("links/tm/apid/100/outOfOrder"));
+        assertEquals(1L, values.get("links/tm/apid/100/suppressed"));
+        assertEquals(1L, values.get("links/tm/apid/100/corrupted"));
+        assertEquals(1L, values.get("links/tm/apid/200/received"));
+        assertEquals(0L, values.get("links/tm/apid/200/lost"));
+        assertEquals(2L, values.get("links/tm/filtered"));
+        // 8 parameters per APID seen, one for the link
+        assertEquals(17, values.size());
+        assertFalse(values.containsKey("links/tm/apid/300/received"));
+
+        // The parameters are created once, the counters are not reset
+        statistics.received(100);
+        values = collect(2000);
+        assertEquals(11L, values.get("links/tm/apid/100/received"));
+        assertEquals(17, sps.created);
+    }
+
+    @Test
+    public void testRate() {
+        statistics.received(100, 50);
+        Map<String, Object> values = collect(10_000);
+        // No previous collection
+        assertEquals(0.0, values.get("links/tm/apid/100/packetRate"));
+
+        statistics.received(100, 50);
+        statistics.received(200, 20);
+        values = collect(20_000);
+        assertEquals(5.0, values.get("links/tm/apid/100/packetRate"));
+        // Counted since the previous collection, even if the APID was not seen yet
+        assertEquals(2.0, values.get("links/tm/apid/200/packetRate"));
+
+        values = collect(25_000);
+        assertEquals(0.0, values.get("links/tm/apid/100/packetRate"));
+        assertEquals(0.0, values.get("links/tm/apid/200/packetRate"));
+    }
+
+    @Test
+    public void testNotCollectedBeforeSetup() {
+        PacketStatistics notSetUp = new PacketStatistics();
+        notSetUp.received(100);
+        List<ParameterValue> list = new ArrayList<>();
+        notSetUp.collectSystemParameters(1000, list);
+        assertTrue(list.isEmpty());
+    }
+
+    private Map<String, Object> collect(long time) {
+        List<ParameterValue> list = new ArrayList<>();
+        statistics.collectSystemParameters(time, list);
+        Map<String, Object> values = new HashMap<>();
+        for (ParameterValue pv : list) {
+            assertEquals(time, pv.getGenerationTime());
+            String name = pv.getParameter().getQualifiedName().substring(FakeSystemParameters.NAMESPACE.length());
+            values.put(name, ValueUtility.getYarchValue(pv.getEngValue()));
+        }
+        return values;
+    }
+
+    // Creates the parameters without a processor MDB
+    static class FakeSystemParameters extends SystemParametersService {
+        static final String NAMESPACE = "/yamcs/test/";
+        int created;
+
+        @Override
+        public SystemParameter createSystemParameter(String name, Type type, UnitType unit, String description) {
+            created++;
+            return SystemParameter.getForFullyQualifiedName(NAMESPACE + name);
+        }
+
+        @Override
+        public SystemParameter createSystemParameter(String name, Type type, String description) {
+            return createSystemParameter(name, type, null, description);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.myproject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.yamcs.events.AbstractEventProducer;
+import org.yamcs.yarch.protobuf.Db.Event;
+
+/**
+ * Event producer keeping the events in memory, for the tests.
+ */
+public class RecordingEventProducer extends AbstractEventProducer {
+
+    final List<Event> events = new ArrayList<>();
+
+    public RecordingEventProducer() {
+        setSource("test");
+    }
+
+    @Override
+    public synchronized void sendEvent(Event event) {
+        events.add(event);
+    }
+
+    public synchronized List<String> getMessages() {
+        List<String> messages = new ArrayList<>();
+        for (Event event : events) {
+            messages.add(event.getMessage());
+        }
+        return messages;
+    }
+
+    @Override
+    public long getMissionTime() {
+        return 0;
+    }
+
+    @Override
+    public void close() {
+    }
+}
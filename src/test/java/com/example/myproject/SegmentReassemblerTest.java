@@ -0,0 +1,84 @@
+package com.example.myproject;
+
+import static com.example.myproject.TestPackets.packet;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.yamcs.TmPacket;
+
+public class SegmentReassemblerTest {
+
+    private final RecordingEventProducer events = new RecordingEventProducer();
+
+    @Test
+    public void testReassembly() {
+        SegmentReassembler reassembler = new SegmentReassembler(10000, 0, events);
+        assertNull(process(reassembler, packet(100, CcsdsHeader.SEQ_FLAGS_FIRST, 10, (byte) 1, (byte) 2), 0));
+        assertNull(process(reassembler, packet(100, CcsdsHeader.SEQ_FLAGS_CONTINUATION, 11, (byte) 3), 0));
+        TmPacket result = process(reassembler, packet(100, CcsdsHeader.SEQ_FLAGS_LAST, 12, (byte) 4, (byte) 5), 50);
+
+        assertArrayEquals(packet(100, CcsdsHeader.SEQ_FLAGS_UNSEGMENTED, 10, (byte) 1, (byte) 2, (byte) 3, (byte) 4,
+                (byte) 5), result.getPacket());
+        assertEquals(50, result.getReceptionTime());
+        assertEquals(0, events.events.size());
+    }
+
+    @Test
+    public void testTrailersAreRemoved() {
+        SegmentReassembler reassembler = new SegmentReassembler(10000, 2, events);
+        assertNull(process(reassembler, packet(100, CcsdsHeader.SEQ_FLAGS_FIRST, 0, (byte) 1, (byte) 0xEE, (byte) 0xEE),
+                0));
+        TmPacket result = process(reassembler, packet(100, CcsdsHeader.SEQ_FLAGS_LAST, 1, (byte) 2, (byte) 0xEE,
+                (byte) 0xEE), 0);
+
+        assertArrayEquals(packet(100, CcsdsHeader.SEQ_FLAGS_UNSEGMENTED, 0, (byte) 1, (byte) 2), result.getPacket());
+    }
+
+    @Test
+    public void testUnsegmentedPassesThrough() {
+        SegmentReassembler reassembler = new SegmentReassembler(10000, 0, events);
+        TmPacket packet = new TmPacket(0, packet(100, 5, (byte) 1));
+        assertSame(packet, reassembler.process(packet, CcsdsHeader.apidSeqCount(packet.getPacket())));
+    }
+
+    @Test
+    public void testMissingSegment() {
+        SegmentReassembler reassembler = new SegmentReassembler(10000, 0, events);
+        process(reassembler, packet(100, CcsdsHeader.SEQ_FLAGS_FIRST, 10, (byte) 1), 0);
+        assertNull(process(reassembler, packet(100, CcsdsHeader.SEQ_FLAGS_LAST, 12, (byte) 2), 0));
+        assertEquals(1, events.events.size());
+
+        // The next group is reassembled normally
+        process(reassembler, packet(100, CcsdsHeader.SEQ_FLAGS_FIRST, 13, (byte) 3), 0);
+        TmPacket result = process(reassembler, packet(100, CcsdsHeader.SEQ_FLAGS_LAST, 14, (byte) 4), 0);
+        assertArrayEquals(packet(100, CcsdsHeader.SEQ_FLAGS_UNSEGMENTED, 13, (byte) 3, (byte) 4), result.getPacket());
+    }
+
+    @Test
+    public void testTimeout() {
+        SegmentReassembler reassembler = new SegmentReassembler(1000, 0, events);
+        process(reassembler, packet(100, CcsdsHeader.SEQ_FLAGS_FIRST, 0, (byte) 1), 0);
+        assertNull(process(reassembler, packet(100, CcsdsHeader.SEQ_FLAGS_LAST, 1, (byte) 2), 1001));
+        assertEquals(1, events.events.size());
+    }
+
+    @Test
+    public void testLargeGroup() {
+        SegmentReassembler reassembler = new SegmentReassembler(10000, 0, events);
+        byte[] data = new byte[1000];
+        process(reassembler, packet(100, CcsdsHeader.SEQ_FLAGS_FIRST, 0, data), 0);
+        for (int i = 1; i < 10; i++) {
+            process(reassembler, packet(100, CcsdsHeader.SEQ_FLAGS_CONTINUATION, i, data), 0);
+        }
+        TmPacket result = process(reassembler, packet(100, CcsdsHeader.SEQ_FLAGS_LAST, 10, data), 0);
+        assertEquals(CcsdsHeader.PRIMARY_HEADER_LENGTH + 11 * data.length, result.getPacket().length);
+        assertEquals(result.getPacket().length, CcsdsHeader.packetLength(result.getPacket(), 0));
+    }
+
+    private static TmPacket process(SegmentReassembler reassembler, byte[] bytes, long receptionTime) {
+        return reassembler.process(new TmPacket(receptionTime, bytes), CcsdsHeader.apidSeqCount(bytes));
+    }
+}
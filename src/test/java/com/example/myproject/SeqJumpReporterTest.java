@@ -0,0 +1,50 @@
+package com.example.myproject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class SeqJumpReporterTest {
+
+    @Test
+    public void testLastJumpReportedByTick() {
+        RecordingEventProducer events = new RecordingEventProducer();
+        SeqJumpReporter reporter = new SeqJumpReporter(events, 1000);
+
+        reporter.jump(100, 10, 20, 0);
+        reporter.jump(100, 20, 25, 100);
+        assertEquals(0, events.getMessages().size());
+
+        // No packet arrives anymore: the summary is sent by the timer
+        reporter.tick(999);
+        assertEquals(0, events.getMessages().size());
+        reporter.tick(1000);
+        assertEquals(1, events.getMessages().size());
+        assertEquals("2 sequence count jumps for APID: 100, 13 packets lost, first seq: 10 last seq: 25",
+                events.getMessages().get(0));
+    }
+
+    @Test
+    public void testBackwardJumpIsNotLoss() {
+        RecordingEventProducer events = new RecordingEventProducer();
+        SeqJumpReporter reporter = new SeqJumpReporter(events, 1000);
+
+        reporter.jump(7, 500, 100, 0);
+        reporter.jump(7, 100, 103, 0);
+        reporter.tick(1000);
+
+        String msg = events.getMessages().get(0);
+        assertTrue(msg.contains("2 packets lost, 1 backwards"), msg);
+    }
+
+    @Test
+    public void testImmediateReport() {
+        RecordingEventProducer events = new RecordingEventProducer();
+        SeqJumpReporter reporter = new SeqJumpReporter(events, 0);
+
+        reporter.jump(5, 1, 3, 0);
+        assertEquals(1, events.getMessages().size());
+        assertEquals("Sequence count jump for APID: 5 old seq: 1 newseq: 3", events.getMessages().get(0));
+    }
+}
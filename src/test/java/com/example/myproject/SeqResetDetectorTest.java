@@ -0,0 +1,62 @@
+package com.example.myproject;
+
+import static com.example.myproject.TestPackets.packet;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.yamcs.YConfiguration;
+
+public class SeqResetDetectorTest {
+
+    private final SeqResetDetector detector = new SeqResetDetector(YConfiguration.emptyConfig());
+
+    @Test
+    public void testResetAfterSilence() {
+        detector.update(100, 500, packet(100, 500), 0, true);
+
+        // A low count right after the previous packet is a jump, after 5 seconds of silence a reset
+        assertFalse(detector.update(100, 0, packet(100, 0), 1000, false));
+        detector.update(100, 1, packet(100, 1), 1100, true);
+        assertTrue(detector.update(100, 2, packet(100, 2), 6100, false));
+
+        // A high count after a silence is not a reset
+        assertFalse(detector.update(100, 3000, packet(100, 3000), 20_000, false));
+    }
+
+    @Test
+    public void testFirstPacketAfterStart() {
+        // The previous count comes from the state file
+        assertTrue(detector.update(100, 0, packet(100, 0), 0, false));
+    }
+
+    @Test
+    public void testResetByRebootCounter() {
+        SeqResetDetector detector = new SeqResetDetector(
+                YConfiguration.wrap(Map.of("rebootCounter", Map.of("offset", 6, "size", 2))));
+        detector.update(100, 500, packet(100, 500, (byte) 0, (byte) 7), 0, true);
+
+        assertFalse(detector.rebootCounterChanged(100, packet(100, 501, (byte) 0, (byte) 7)));
+        assertTrue(detector.rebootCounterChanged(100, packet(100, 1000, (byte) 0, (byte) 8)));
+        // Even without silence, with a high count, and a count that happens to follow the previous one
+        assertTrue(detector.update(100, 501, packet(100, 501, (byte) 0, (byte) 8), 10, true));
+        assertFalse(detector.update(100, 502, packet(100, 502, (byte) 0, (byte) 8), 20, true));
+    }
+
+    @Test
+    public void testDuplicateAndGap() {
+        detector.update(100, 10, packet(100, 10), 0, true);
+        assertFalse(detector.update(100, 10, packet(100, 10), 10, false));
+        assertFalse(detector.update(100, 15, packet(100, 15), 20, false));
+    }
+
+    @Test
+    public void testApidsAreIndependent() {
+        detector.update(100, 500, packet(100, 500), 0, true);
+        detector.update(101, 500, packet(101, 500), 6000, true);
+        assertTrue(detector.update(100, 0, packet(100, 0), 6000, false));
+        assertFalse(detector.update(101, 0, packet(101, 0), 6000, false));
+    }
+}
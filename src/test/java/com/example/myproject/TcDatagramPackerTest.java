@@ -0,0 +1,89 @@
+package com.example.myproject;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.yamcs.ConfigurationException;
+import org.yamcs.YConfiguration;
+import org.yamcs.protobuf.Commanding.CommandId;
+
+public class TcDatagramPackerTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    private final TcDatagramPacker packer = new TcDatagramPacker(
+            YConfiguration.wrap(Map.of("mtu", 30, "flushDelay", 10)));
+
+    @Test
+    public void testFillsUpToMtu() {
+        byte[] p1 = TestPackets.packet(101, 1, new byte[6]);
+        byte[] p2 = TestPackets.packet(101, 2, new byte[6]);
+        assertTrue(packer.isEmpty());
+        packer.add(cmdId(1), p1);
+        assertTrue(packer.fits(p2));
+        packer.add(cmdId(2), p2);
+
+        // 24 bytes: another packet of 12 bytes does not fit, one of 6 does
+        assertFalse(packer.fits(TestPackets.packet(101, 3, new byte[6])));
+        assertTrue(packer.fits(TestPackets.packet(101, 3)));
+
+        assertEquals(24, packer.getLength());
+        assertArrayEquals(TestPackets.concat(p1, p2), Arrays.copyOf(packer.getBuffer(), packer.getLength()));
+        assertEquals(List.of(cmdId(1), cmdId(2)), packer.getCommands());
+
+        packer.clear();
+        assertTrue(packer.isEmpty());
+        assertEquals(0, packer.getLength());
+    }
+
+    @Test
+    public void testLargerThanMtu() {
+        assertFalse(packer.fits(new byte[31]));
+        assertTrue(packer.fits(new byte[30]));
+    }
+
+    @Test
+    public void testFlushDelay() {
+        assertFalse(packer.isDue(System.nanoTime() + 100 * MILLIS));
+
+        // The deadline is set by the first packet, 10 ms after it is added
+        long before = System.nanoTime();
+        packer.add(cmdId(1), TestPackets.packet(101, 1));
+        long after = System.nanoTime();
+        assertFalse(packer.isDue(before + 10 * MILLIS - 1));
+        assertTrue(packer.isDue(after + 10 * MILLIS));
+        assertTrue(packer.millisToDeadline(before) >= 10);
+        assertEquals(0, packer.millisToDeadline(after + 10 * MILLIS));
+
+        // A second packet does not move it
+        packer.add(cmdId(2), TestPackets.packet(101, 2));
+        assertTrue(packer.isDue(after + 10 * MILLIS));
+    }
+
+    @Test
+    public void testCountDatagram() {
+        assertEquals(1, packer.countDatagram(3));
+        assertEquals(2, packer.countDatagram(1));
+    }
+
+    @Test
+    public void testInvalidConfig() {
+        assertThrows(ConfigurationException.class,
+                () -> new TcDatagramPacker(YConfiguration.wrap(Map.of("mtu", 0))));
+        assertThrows(ConfigurationException.class,
+                () -> new TcDatagramPacker(YConfiguration.wrap(Map.of("flushDelay", -1))));
+    }
+
+    static CommandId cmdId(int seq) {
+        return CommandId.newBuilder().setCommandName("/myproject/Reboot").setOrigin("test").setSequenceNumber(seq)
+                .setGenerationTime(0).build();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.myproject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yamcs.YConfiguration;
+import org.yamcs.commanding.PreparedCommand;
+import org.yamcs.protobuf.Commanding.CommandId;
+import org.yamcs.xtce.MetaCommand;
+
+/**
+ * Compares the {@link TcDispatchQueue} with the LinkedBlockingQueue the link uses without dispatch classes: a command
+ * offered and polled, alternately urgent and routine. The routine class is not paced, so that every poll returns a
+ * command and only the cost of the queue is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TcDispatchQueueBenchmark {
+
+    private final PreparedCommand[] commands = new PreparedCommand[2];
+    private BlockingQueue<PreparedCommand> dispatch;
+    private BlockingQueue<PreparedCommand> linked;
+    private int n;
+
+    @Setup
+    public void setup() {
+        YConfiguration config = YConfiguration.wrap(Map.of("classes", List.of(
+                Map.of("name", "urgent", "commands", List.of("/myproject/Reboot")),
+                Map.of("name", "routine"))));
+        dispatch = new TcDispatchQueue(config, 1000);
+        linked = new LinkedBlockingQueue<>(1000);
+        commands[0] = command("/myproject/Reboot");
+        commands[1] = command("/myproject/SwitchVoltageOn");
+    }
+
+    @Benchmark
+    public PreparedCommand dispatch() {
+        dispatch.offer(commands[n++ & 1]);
+        return dispatch.poll();
+    }
+
+    @Benchmark
+    public PreparedCommand linked() {
+        linked.offer(commands[n++ & 1]);
+        return linked.poll();
+    }
+
+    private static PreparedCommand command(String name) {
+        CommandId cmdId = CommandId.newBuilder().setCommandName(name).setOrigin("benchmark").setSequenceNumber(0)
+                .setGenerationTime(0).build();
+        PreparedCommand pc = new PreparedCommand(cmdId);
+        MetaCommand mc = new MetaCommand(name.substring(name.lastIndexOf('/') + 1));
+        mc.setQualifiedName(name);
+        pc.setMetaCommand(mc);
+        return pc;
+    }
+}
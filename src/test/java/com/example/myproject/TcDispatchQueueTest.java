@@ -0,0 +1,118 @@
+package com.example.myproject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.yamcs.YConfiguration;
+import org.yamcs.commanding.PreparedCommand;
+import org.yamcs.protobuf.Commanding.CommandId;
+import org.yamcs.xtce.MetaCommand;
+
+public class TcDispatchQueueTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    // Reboot goes first, the other commands at most 1 per second
+    private static final YConfiguration CONFIG = YConfiguration.wrap(Map.of("classes", List.of(
+            Map.of("name", "urgent", "commands", List.of("/myproject/Reboot")),
+            Map.of("name", "routine", "rate", 1.0, "burst", 1))));
+
+    private int seq;
+
+    @Test
+    public void testTokenBucket() {
+        TcDispatchQueue.PriorityClass c = new TcDispatchQueue.PriorityClass("test", 10, 3);
+        long t0 = c.lastRefill;
+
+        // The bucket starts full
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, c.nanosUntilToken(t0));
+            c.takeToken();
+        }
+        assertEquals(SECOND / 10, c.nanosUntilToken(t0));
+        assertEquals(SECOND / 20, c.nanosUntilToken(t0 + SECOND / 20));
+        assertEquals(0, c.nanosUntilToken(t0 + SECOND / 10));
+        c.takeToken();
+
+        // After a long silence, no more than the burst is available
+        long t1 = t0 + 100 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, c.nanosUntilToken(t1));
+            c.takeToken();
+        }
+        assertTrue(c.nanosUntilToken(t1) > 0);
+    }
+
+    @Test
+    public void testUnpacedClass() {
+        TcDispatchQueue.PriorityClass c = new TcDispatchQueue.PriorityClass("test", 0, 1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, c.nanosUntilToken(c.lastRefill));
+            c.takeToken();
+        }
+    }
+
+    @Test
+    public void testPriorityAndPacing() {
+        TcDispatchQueue queue = new TcDispatchQueue(CONFIG, 10);
+        PreparedCommand routine1 = command("/myproject/SwitchVoltageOn");
+        PreparedCommand routine2 = command("/myproject/SwitchVoltageOff");
+        PreparedCommand urgent = command("/myproject/Reboot");
+        queue.offer(routine1);
+        queue.offer(routine2);
+        queue.offer(urgent);
+
+        assertSame(urgent, queue.poll());
+        assertSame(routine1, queue.poll());
+        // The routine class has used its token
+        assertNull(queue.poll());
+        assertEquals(1, queue.size());
+        assertSame(routine2, queue.peek());
+    }
+
+    @Test
+    public void testSignalsFirst() {
+        TcDispatchQueue queue = new TcDispatchQueue(CONFIG, 10);
+        PreparedCommand urgent = command("/myproject/Reboot");
+        PreparedCommand signal = new PreparedCommand(new byte[0]);
+        queue.offer(urgent);
+        queue.offer(signal);
+
+        assertSame(signal, queue.poll());
+        assertSame(urgent, queue.poll());
+    }
+
+    @Test
+    public void testCapacityAndDrain() {
+        TcDispatchQueue queue = new TcDispatchQueue(CONFIG, 2);
+        assertTrue(queue.offer(command("/myproject/SwitchVoltageOn")));
+        assertTrue(queue.offer(command("/myproject/Reboot")));
+        assertFalse(queue.offer(command("/myproject/Reboot")));
+        assertEquals(0, queue.remainingCapacity());
+
+        // Draining ignores the pacing
+        List<PreparedCommand> drained = new ArrayList<>();
+        assertEquals(2, queue.drainTo(drained));
+        assertEquals("/myproject/Reboot", drained.get(0).getMetaCommand().getQualifiedName());
+        assertEquals(0, queue.size());
+    }
+
+    private PreparedCommand command(String name) {
+        CommandId cmdId = CommandId.newBuilder().setCommandName(name).setOrigin("test").setSequenceNumber(seq++)
+                .setGenerationTime(0).build();
+        PreparedCommand pc = new PreparedCommand(cmdId);
+        MetaCommand mc = new MetaCommand(name.substring(name.lastIndexOf('/') + 1));
+        mc.setQualifiedName(name);
+        pc.setMetaCommand(mc);
+        return pc;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.myproject;
+
+/**
+ * Builds CCSDS packets for the tests.
+ */
+public class TestPackets {
+
+    /**
+     * @return a telemetry packet with the given primary header fields, followed by the data
+     */
+    public static byte[] packet(int apid, int seqFlags, int seqCount, byte... data) {
+        byte[] bytes = new byte[CcsdsHeader.PRIMARY_HEADER_LENGTH + data.length];
+        bytes[0] = (byte) (apid >> 8);
+        bytes[1] = (byte) apid;
+        bytes[2] = (byte) ((seqFlags << 6) | (seqCount >> 8));
+        bytes[3] = (byte) seqCount;
+        bytes[4] = (byte) ((bytes.length - 7) >> 8);
+        bytes[5] = (byte) (bytes.length - 7);
+        System.arraycopy(data, 0, bytes, CcsdsHeader.PRIMARY_HEADER_LENGTH, data.length);
+        return bytes;
+    }
+
+    public static byte[] packet(int apid, int seqCount, byte... data) {
+        return packet(apid, CcsdsHeader.SEQ_FLAGS_UNSEGMENTED, seqCount, data);
+    }
+
+    public static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] result = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.myproject;
+
+import static com.example.myproject.TestPackets.packet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yamcs.ConfigurationException;
+import org.yamcs.StandardTupleDefinitions;
+import org.yamcs.TmPacket;
+import org.yamcs.YConfiguration;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.yarch.StreamSubscriber;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.YarchDatabase;
+import org.yamcs.yarch.YarchDatabaseInstance;
+
+public class TmStreamRouterTest {
+
+    private static final String INSTANCE = "tmrouter";
+
+    @TempDir
+    static Path dataDir;
+    private static YarchDatabaseInstance ydb;
+
+    private final List<TmPacket> linkStream = new CopyOnWriteArrayList<>();
+    private final List<Map.Entry<String, StreamSubscriber>> subscribers = new ArrayList<>();
+    private TmStreamRouter router;
+
+    @BeforeAll
+    public static void setUpDatabase() throws Exception {
+        YConfiguration.setResolver(name -> new ByteArrayInputStream(
+                ("dataDir: " + dataDir + "\n").getBytes(StandardCharsets.UTF_8)));
+        TimeEncoding.setUp();
+        ydb = YarchDatabase.getInstance(INSTANCE);
+        for (String stream : List.of("tm_a", "tm_b")) {
+            ydb.execute("create stream " + stream + " " + StandardTupleDefinitions.TM.getStringDefinition());
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (router != null) {
+            router.stop();
+        }
+        for (Map.Entry<String, StreamSubscriber> e : subscribers) {
+            ydb.getStream(e.getKey()).removeSubscriber(e.getValue());
+        }
+    }
+
+    @Test
+    public void testOrderPerStream() {
+        router = router(1000, Map.of("stream", "tm_a", "apids", List.of("200-299")),
+                Map.of("stream", "tm_b", "apids", List.of(300)));
+        List<Tuple> tmA = subscribe("tm_a");
+        List<Tuple> tmB = subscribe("tm_b");
+        router.start();
+
+        for (int seq = 0; seq < 1000; seq++) {
+            for (int apid : new int[] { 200, 300, 100, 299 }) {
+                router.processPacket(new TmPacket(seq, packet(apid, seq, (byte) 0)));
+            }
+        }
+        router.stop();
+
+        assertSequence(tmA, 1000, 200, 299);
+        assertSequence(tmB, 1000, 300);
+        assertEquals(1000, linkStream.size());
+        for (int seq = 0; seq < 1000; seq++) {
+            assertEquals(100, CcsdsHeader.apid(linkStream.get(seq).getPacket()));
+            assertEquals(seq, CcsdsHeader.seqCount(CcsdsHeader.apidSeqCount(linkStream.get(seq).getPacket())));
+        }
+    }
+
+    @Test
+    public void testInvalidPacketsStayOnTheLinkStream() {
+        router = router(10, Map.of("stream", "tm_a", "apids", List.of(200)));
+        List<Tuple> tmA = subscribe("tm_a");
+        router.start();
+
+        TmPacket invalid = new TmPacket(0, packet(200, 0, (byte) 0));
+        invalid.setInvalid();
+        router.processPacket(invalid);
+        router.processPacket(new TmPacket(0, new byte[] { 0, (byte) 200 }));
+        router.stop();
+
+        assertEquals(2, linkStream.size());
+        assertTrue(tmA.isEmpty());
+    }
+
+    @Test
+    public void testStopDrainsTheQueues() {
+        router = router(1000, Map.of("stream", "tm_a", "apids", List.of(200)));
+        List<Tuple> tmA = new ArrayList<>();
+        addSubscriber("tm_a", (stream, tuple) -> {
+            sleep(1);
+            tmA.add(tuple);
+        });
+        router.start();
+
+        for (int seq = 0; seq < 200; seq++) {
+            router.processPacket(new TmPacket(seq, packet(200, seq, (byte) 0)));
+        }
+        router.stop();
+        // All the queued packets were emitted before stop returned
+        assertSequence(tmA, 200, 200);
+    }
+
+    @Test
+    public void testInterruptedWhileQueueFull() throws Exception {
+        router = router(1, Map.of("stream", "tm_a", "apids", List.of(200)));
+        CountDownLatch emitting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Tuple> tmA = subscribe("tm_a");
+        addSubscriber("tm_a", (stream, tuple) -> {
+            emitting.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        router.start();
+
+        // The first packet is being emitted, the second one fills the queue
+        router.processPacket(new TmPacket(0, packet(200, 0, (byte) 0)));
+        emitting.await();
+        router.processPacket(new TmPacket(1, packet(200, 1, (byte) 0)));
+
+        Thread.currentThread().interrupt();
+        router.processPacket(new TmPacket(2, packet(200, 2, (byte) 0)));
+        assertTrue(Thread.interrupted());
+        assertEquals(1, router.getReroutedCount());
+        assertEquals(1, linkStream.size());
+
+        release.countDown();
+        router.stop();
+        assertEquals(2, tmA.size());
+    }
+
+    @Test
+    public void testInvalidConfiguration() {
+        assertThrows(ConfigurationException.class, () -> router(10, Map.of("stream", "unknown", "apids", List.of(1))));
+        assertThrows(ConfigurationException.class, () -> router(10, Map.of("stream", "tm_a", "apids", List.of(1)),
+                Map.of("stream", "tm_b", "apids", List.of("0-10"))));
+        assertThrows(ConfigurationException.class,
+                () -> router(10, Map.of("stream", "tm_a", "apids", List.of("10-5"))));
+        assertThrows(ConfigurationException.class,
+                () -> router(10, Map.of("stream", "tm_a", "apids", List.of(2048))));
+    }
+
+    @SafeVarargs
+    private TmStreamRouter router(int queueSize, Map<String, Object>... streams) {
+        List<YConfiguration> configs = new ArrayList<>();
+        for (Map<String, Object> stream : streams) {
+            configs.add(YConfiguration.wrap(stream));
+        }
+        TmStreamRouter r = new TmStreamRouter(INSTANCE, "udp-in", configs, queueSize);
+        r.setDefaultSink(linkStream::add);
+        return r;
+    }
+
+    private List<Tuple> subscribe(String streamName) {
+        List<Tuple> tuples = new CopyOnWriteArrayList<>();
+        addSubscriber(streamName, (stream, tuple) -> tuples.add(tuple));
+        return tuples;
+    }
+
+    private void addSubscriber(String streamName, StreamSubscriber subscriber) {
+        ydb.getStream(streamName).addSubscriber(subscriber);
+        subscribers.add(Map.entry(streamName, subscriber));
+    }
+
+    // Checks that each APID has its count packets, in order
+    private static void assertSequence(List<Tuple> tuples, int count, int... apids) {
+        for (int apid : apids) {
+            int expected = 0;
+            for (Tuple tuple : tuples) {
+                byte[] bytes = (byte[]) tuple.getColumn(StandardTupleDefinitions.TM_PACKET_COLUMN);
+                if (CcsdsHeader.apid(bytes) == apid) {
+                    assertEquals(expected++, CcsdsHeader.seqCount(CcsdsHeader.apidSeqCount(bytes)), "APID " + apid);
+                    assertEquals("udp-in", tuple.getColumn(StandardTupleDefinitions.TM_LINK_COLUMN));
+                }
+            }
+            assertEquals(count, expected, "APID " + apid);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}